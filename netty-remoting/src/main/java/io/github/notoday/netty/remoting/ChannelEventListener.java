@@ -15,4 +15,10 @@ public interface ChannelEventListener {
     void onChannelException(final String login, final Channel channel);
 
     void onChannelIdle(final String login, final Channel channel);
+
+    /**
+     * 出站缓冲越过高水位(不可写)或回落到低水位以下(可写)
+     */
+    default void onChannelWritabilityChanged(final String login, final Channel channel, final boolean writable) {
+    }
 }
@@ -0,0 +1,24 @@
+package io.github.notoday.netty.remoting;
+
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * 流式请求处理器
+ * <p>
+ * 大于 frameMaxLength 或不适合整体放入内存的内容以分片传输, 接收方逐个消费分片, 按消费进度向发送方授予流控额度
+ *
+ * @author no-today
+ * @date 2023/10/17 14:20
+ */
+public interface NettyStreamProcessor {
+
+    /**
+     * 流开始
+     *
+     * @param ctx    channel handler context
+     * @param header 流的头部, 携带请求的 code/extFields, body 可作为元信息(例如文件名); 返回后释放
+     * @return 当前流的接收器, 同一个流的回调按顺序在注册的线程池中执行
+     */
+    StreamReceiver openStream(ChannelHandlerContext ctx, RemotingCommand header) throws Exception;
+}
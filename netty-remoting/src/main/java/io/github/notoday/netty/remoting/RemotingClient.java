@@ -5,6 +5,11 @@ import io.github.notoday.netty.remoting.exception.RemotingConnectException;
 import io.github.notoday.netty.remoting.exception.RemotingSendRequestException;
 import io.github.notoday.netty.remoting.exception.RemotingTimeoutException;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author no-today
@@ -61,6 +66,20 @@ public interface RemotingClient extends RemotingProcessable {
      */
     void invokeAsync(RemotingCommand request, long timeoutMillis, ResultCallback<RemotingCommand> resultCallback);
 
+    /**
+     * 异步调用, 返回 CompletableFuture 以便组合多个调用
+     * <p>
+     * 与 invokeSync 一致: 收到响应即正常完成, 由调用方判断响应码; 超时、连接断开、发送失败等以 invokeSync 会抛出的异常完成.
+     * 取消 future 会移除等待中的请求并释放信号量, 之后到达的响应被丢弃
+     * <p>
+     * 依赖的阶段默认在回调线程中执行, 见 CallbackMode
+     *
+     * @param request       请求指令
+     * @param timeoutMillis 超时时间
+     * @return 响应指令
+     */
+    CompletableFuture<RemotingCommand> invokeAsync(RemotingCommand request, long timeoutMillis);
+
     /**
      * 单向调用(发送消息，但不需要响应)
      *
@@ -69,4 +88,28 @@ public interface RemotingClient extends RemotingProcessable {
      * @param resultCallback 结果回调
      */
     void invokeOneway(RemotingCommand request, long timeoutMillis, ResultCallback<Void> resultCallback);
+
+    /**
+     * 批量单向调用
+     * <p>
+     * 多条指令合并为一个帧一次写出, 对端逐条分发给处理器; 适合大量小消息的场景
+     *
+     * @param requests       请求指令
+     * @param timeoutMillis  发送超时时间
+     * @param resultCallback 结果回调, 整批只回调一次
+     */
+    void invokeOnewayBatch(List<RemotingCommand> requests, long timeoutMillis, ResultCallback<Void> resultCallback);
+
+    /**
+     * 流式调用
+     * <p>
+     * 用于超过 frameMaxLength 或不适合整体放入内存的内容(例如大文件): 请求作为流的头部, 内容从 input 逐个分片发送,
+     * 发送进度受对端授予的额度控制; 对端消费完所有分片后响应
+     *
+     * @param request        流的头部, code 对应对端注册的流式处理器, body 可作为元信息
+     * @param input          分片来源, 例如 ChunkedNioFile, 每个分片不能超过 frameMaxLength; 发送结束后关闭
+     * @param timeoutMillis  整个传输的超时时间
+     * @param resultCallback 结果回调
+     */
+    void invokeStream(RemotingCommand request, ChunkedInput<ByteBuf> input, long timeoutMillis, ResultCallback<RemotingCommand> resultCallback);
 }
@@ -1,5 +1,8 @@
 package io.github.notoday.netty.remoting;
 
+import io.github.notoday.netty.remoting.compression.Compressor;
+import io.github.notoday.netty.remoting.serializer.Serializer;
+
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -14,7 +17,7 @@ public interface RemotingProcessable {
      * 当根据请求码匹配不到处理器时, 会使用该处理器
      *
      * @param processor 默认处理器
-     * @param executor  执行线程池
+     * @param executor  执行线程池, 不能为 null
      */
     void registerDefaultProcessor(ExecutorService executor, NettyRequestProcessor processor);
 
@@ -22,11 +25,54 @@ public interface RemotingProcessable {
      * 注册请求处理器
      *
      * @param requestCode 请求编码
-     * @param executor    执行线程池
+     * @param executor    执行线程池, 不能为 null; 在 pipeline 线程中执行使用 {@link #registerInlineProcessor}
      * @param processor   处理器
      */
     void registerProcessor(int requestCode, ExecutorService executor, NettyRequestProcessor processor);
 
+    /**
+     * 注册内联请求处理器
+     * <p>
+     * 直接在 pipeline 线程中执行, 不创建任务也不经过线程池排队, 适合微秒级且不阻塞的处理器(例如 ping、读取内存缓存).
+     * 不受虚拟线程模式与 orderedDispatch 影响
+     * <p>
+     * inlineProcessorBudgetMicros 不是限流也不会中断处理器: 只在单次处理结束后检查耗时并打印警告,
+     * 此时该连接(codecOnEventLoop 时是整个 EventLoop 上的连接)已经被阻塞了这么久, 警告只用于发现误注册的慢处理器
+     *
+     * @param requestCode 请求编码
+     * @param processor   处理器, 不能阻塞
+     */
+    void registerInlineProcessor(int requestCode, NettyRequestProcessor processor);
+
+    /**
+     * 注册流式请求处理器
+     * <p>
+     * 同一个流的分片按顺序在线程池中消费, 不同的流之间并发
+     *
+     * @param requestCode 请求编码
+     * @param executor    执行线程池
+     * @param processor   处理器
+     */
+    void registerStreamProcessor(int requestCode, ExecutorService executor, NettyStreamProcessor processor);
+
+    /**
+     * 注册序列化器
+     * <p>
+     * 指令携带序列化器编号, 对端按编号选择实现, 通信双方需要注册相同编号的序列化器
+     *
+     * @param serializer 序列化器, 相同编号会覆盖已有实现
+     */
+    void registerSerializer(Serializer serializer);
+
+    /**
+     * 注册压缩算法
+     * <p>
+     * 压缩 body 携带算法编号, 对端按编号选择实现, 通信双方需要注册相同编号的压缩算法
+     *
+     * @param compressor 压缩算法, 相同编号会覆盖已有实现
+     */
+    void registerCompressor(Compressor compressor);
+
     /**
      * 注册RPC调用钩子
      */
@@ -5,6 +5,11 @@ import io.github.notoday.netty.remoting.exception.RemotingConnectException;
 import io.github.notoday.netty.remoting.exception.RemotingSendRequestException;
 import io.github.notoday.netty.remoting.exception.RemotingTimeoutException;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author no-today
@@ -38,6 +43,16 @@ public interface RemotingServer extends RemotingProcessable {
      */
     void invokeAsync(String login, RemotingCommand request, long timeoutMillis, ResultCallback<RemotingCommand> resultCallback);
 
+    /**
+     * 异步调用, 返回 CompletableFuture; 完成与取消的语义同 RemotingClient#invokeAsync(RemotingCommand, long)
+     *
+     * @param login         目标对端
+     * @param request       请求指令
+     * @param timeoutMillis 超时时间
+     * @return 响应指令
+     */
+    CompletableFuture<RemotingCommand> invokeAsync(String login, RemotingCommand request, long timeoutMillis);
+
     /**
      * 单向调用(发送消息，但不需要响应)
      *
@@ -48,6 +63,27 @@ public interface RemotingServer extends RemotingProcessable {
      */
     void invokeOneway(String login, RemotingCommand request, long timeoutMillis, ResultCallback<Void> resultCallback);
 
+    /**
+     * 批量单向调用: 多条指令合并为一个帧一次写出
+     *
+     * @param login          目标对端
+     * @param requests       请求指令
+     * @param timeoutMillis  发送超时时间
+     * @param resultCallback 结果回调, 整批只回调一次
+     */
+    void invokeOnewayBatch(String login, List<RemotingCommand> requests, long timeoutMillis, ResultCallback<Void> resultCallback);
+
+    /**
+     * 流式调用: 内容从 input 逐个分片发送, 受对端授予的额度控制, 对端消费完所有分片后响应
+     *
+     * @param login          目标对端
+     * @param request        流的头部, code 对应对端注册的流式处理器
+     * @param input          分片来源, 发送结束后关闭
+     * @param timeoutMillis  整个传输的超时时间
+     * @param resultCallback 结果回调
+     */
+    void invokeStream(String login, RemotingCommand request, ChunkedInput<ByteBuf> input, long timeoutMillis, ResultCallback<RemotingCommand> resultCallback);
+
     /**
      * 检查指定对端是否连接了当前节点
      *
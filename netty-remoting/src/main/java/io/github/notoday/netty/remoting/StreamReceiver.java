@@ -0,0 +1,33 @@
+package io.github.notoday.netty.remoting;
+
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 单个流的接收器, 回调按分片顺序串行执行
+ *
+ * @author no-today
+ * @date 2023/10/17 14:20
+ */
+public interface StreamReceiver {
+
+    /**
+     * 收到一个分片
+     *
+     * @param chunk 分片内容, 返回后释放; 需要继续持有时自行 retain
+     */
+    void onChunk(ByteBuf chunk) throws Exception;
+
+    /**
+     * 所有分片接收完毕
+     *
+     * @return 响应, 以流的 reqId 返回给发送方
+     */
+    RemotingCommand onComplete() throws Exception;
+
+    /**
+     * 发送方中止、连接断开或者处理异常, 之后不会再有回调
+     */
+    default void onError(Throwable cause) {
+    }
+}
@@ -12,6 +12,8 @@ import java.net.NetworkInterface;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -96,6 +98,23 @@ public class RemotingUtil {
         };
     }
 
+    /**
+     * 每个任务一个虚拟线程(JDK 21+), 通过反射创建以兼容低版本编译
+     *
+     * @return 当前 JDK 不支持虚拟线程时返回 null
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(final String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "_", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     public static void closeChannel(final Channel channel) {
         final String remoteAddr = parseChannelRemoteAddr(channel);
         channel.close().addListener(future -> log.debug("closeChannel: close the connection to remote address[{}] result: {}", remoteAddr, future.isSuccess()));
@@ -0,0 +1,31 @@
+package io.github.notoday.netty.remoting.compression;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * body 压缩算法
+ * <p>
+ * 编号随压缩后的 body 写出, 对端根据编号选择对应实现解压
+ *
+ * @author no-today
+ * @date 2023/10/11 10:05
+ */
+public interface Compressor {
+
+    /**
+     * 压缩算法编号, 取值 1~127, 通信双方需注册相同编号的实现
+     */
+    byte getId();
+
+    /**
+     * 压缩 in 的可读内容写入 out
+     */
+    void compress(ByteBuf in, ByteBuf out) throws Exception;
+
+    /**
+     * 解压 in 的可读内容写入 out
+     * <p>
+     * out 的最大容量即原始长度, 解压结果超出时应当失败
+     */
+    void decompress(ByteBuf in, ByteBuf out) throws Exception;
+}
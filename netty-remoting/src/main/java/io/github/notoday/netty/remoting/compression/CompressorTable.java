@@ -0,0 +1,45 @@
+package io.github.notoday.netty.remoting.compression;
+
+/**
+ * 按编号索引的压缩算法表, 内置 Deflate / Snappy
+ * <p>
+ * 与处理器表一样, 需要在启动前完成注册
+ *
+ * @author no-today
+ * @date 2023/10/11 10:26
+ */
+public class CompressorTable {
+
+    public static final Compressor DEFLATE = new DeflateCompressor();
+    public static final Compressor SNAPPY = new SnappyCompressor();
+
+    /**
+     * 只包含内置压缩算法
+     */
+    public static final CompressorTable DEFAULT = new CompressorTable();
+
+    private final Compressor[] table = new Compressor[128];
+
+    public CompressorTable() {
+        register(DEFLATE);
+        register(SNAPPY);
+    }
+
+    /**
+     * 注册压缩算法, 相同编号会覆盖已有实现(包括内置实现)
+     */
+    public void register(Compressor compressor) {
+        byte id = compressor.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("compressor id must be in [1, 127], but got " + id);
+        }
+        this.table[id] = compressor;
+    }
+
+    /**
+     * @return 未注册时返回 null
+     */
+    public Compressor get(byte id) {
+        return id <= 0 ? null : this.table[id];
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.notoday.netty.remoting.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * JDK Deflate, 压缩率较高, CPU 开销也较高
+ * <p>
+ * Deflater/Inflater 持有本地内存, 按线程复用
+ *
+ * @author no-today
+ * @date 2023/10/11 10:12
+ */
+public class DeflateCompressor implements Compressor {
+
+    public static final byte ID = 1;
+
+    private static final byte[] SCRATCH = new byte[1];
+
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        @Override
+        protected void onRemoval(Deflater value) {
+            value.end();
+        }
+    };
+
+    private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+
+        @Override
+        protected void onRemoval(Inflater value) {
+            value.end();
+        }
+    };
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        Deflater deflater = DEFLATER.get();
+        try {
+            deflater.setInput(in.nioBuffer());
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                out.ensureWritable(Math.max(1024, in.readableBytes() >> 4));
+                ByteBuffer dst = out.nioBuffer(out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + deflater.deflate(dst));
+            }
+            in.skipBytes(in.readableBytes());
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) throws DataFormatException {
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(in.nioBuffer());
+
+            while (!inflater.finished()) {
+                if (!out.isWritable()) {
+                    // 输出已达原始长度, 流必须恰好结束
+                    if (inflater.inflate(SCRATCH) != 0 || !inflater.finished()) {
+                        throw new DecompressionException("decompressed body exceeds declared length");
+                    }
+                    break;
+                }
+
+                ByteBuffer dst = out.nioBuffer(out.writerIndex(), out.writableBytes());
+                int n = inflater.inflate(dst);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DecompressionException("deflate stream is truncated");
+                }
+                out.writerIndex(out.writerIndex() + n);
+            }
+            in.skipBytes(in.readableBytes());
+        } finally {
+            inflater.reset();
+        }
+    }
+}
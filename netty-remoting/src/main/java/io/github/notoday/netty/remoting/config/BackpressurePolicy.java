@@ -0,0 +1,30 @@
+package io.github.notoday.netty.remoting.config;
+
+/**
+ * channel 不可写(出站缓冲超过高水位)时, 异步与单向调用的处理方式
+ *
+ * @author no-today
+ * @date 2023/10/19 14:10
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * 不处理, 照常写入出站缓冲
+     */
+    NONE,
+
+    /**
+     * 等待 channel 变为可写, 超过调用的超时时间则失败
+     */
+    WAIT,
+
+    /**
+     * 立即失败
+     */
+    FAIL_FAST,
+
+    /**
+     * 单向调用在本端排队, 队列满时丢弃最旧的; 异步调用同 WAIT
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,30 @@
+package io.github.notoday.netty.remoting.config;
+
+/**
+ * 异步调用的响应回调在哪里执行
+ *
+ * @author no-today
+ * @date 2023/10/21 10:15
+ */
+public enum CallbackMode {
+
+    /**
+     * 直接在收到响应的线程(pipeline 线程)中执行, 没有任何切换开销; 回调不能阻塞
+     */
+    IO_THREAD,
+
+    /**
+     * 按 reqId 分散到固定数量的单线程执行器, 每个执行器有独立的队列, 避免所有回调竞争同一个队列; 不保证同一连接的回调顺序
+     */
+    STRIPED,
+
+    /**
+     * 同 STRIPED, 但按连接分散, 同一连接的回调在同一个执行器上按响应到达的顺序执行
+     */
+    CHANNEL_STRIPED,
+
+    /**
+     * 提交到回调线程池, 可以通过 setCallbackExecutor 指定; 默认
+     */
+    EXECUTOR
+}
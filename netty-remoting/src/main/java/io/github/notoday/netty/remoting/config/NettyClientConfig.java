@@ -30,6 +30,26 @@ public class NettyClientConfig extends NettySocketConfig implements Cloneable {
     private int channelMaxIdleSeconds = NettySystemConfig.clientChannelMaxIdleSeconds;
     private boolean closeSocketIfTimeout = NettySystemConfig.clientCloseSocketIfTimeout;
 
+    /**
+     * Linux 上可用时使用 epoll 原生传输, 与服务端一致
+     */
+    private boolean useEpoll = NettySystemConfig.clientUseEpoll;
+
+    /**
+     * epoll 边缘触发, 否则水平触发; 只在 epoll 传输下生效
+     */
+    private boolean epollEdgeTriggered = NettySystemConfig.clientEpollEdgeTriggered;
+
+    /**
+     * TCP_QUICKACK, 立即回复 ACK 而不是延迟确认; 只在 epoll / io_uring 传输下生效
+     */
+    private boolean tcpQuickAck = NettySystemConfig.clientTcpQuickAck;
+
+    /**
+     * TCP_USER_TIMEOUT, 已发送的数据超过该毫秒数未被确认时内核断开连接, 用于尽快发现失联的对端; 小于等于 0 表示不设置; 只在 epoll / io_uring 传输下生效
+     */
+    private int tcpUserTimeoutMillis = NettySystemConfig.clientTcpUserTimeout;
+
     @Override
     public NettyClientConfig clone() {
         try {
@@ -18,4 +18,114 @@ public class NettySocketConfig {
     private int socketBacklog = NettySystemConfig.socketBacklog;
 
     private boolean enableSSL = true;
+
+    /**
+     * body 达到该字节数才压缩, 小于等于 0 表示不压缩
+     */
+    private int compressionThreshold = NettySystemConfig.compressionThreshold;
+
+    /**
+     * 压缩算法编号, 见 CompressorTable
+     */
+    private byte compressionType = NettySystemConfig.compressionType;
+
+    /**
+     * extFields 字典容量, 认证时与对端协商取较小值, 小于等于 0 表示不启用
+     */
+    private int headerTableSize = NettySystemConfig.headerTableSize;
+
+    /**
+     * 字典是否同时索引 extFields 的 value, 否则只索引 key; 适合 value 取值有限的场景(例如路由键)
+     */
+    private boolean headerTableIndexValues = NettySystemConfig.headerTableIndexValues;
+
+    /**
+     * 接收流的窗口(分片数), 每个流最多缓存这么多未消费的分片
+     */
+    private int streamWindow = NettySystemConfig.streamWindow;
+
+    /**
+     * 每个连接同时接收中的流的上限, 超出时新的流响应繁忙
+     */
+    private int streamMaxInbound = NettySystemConfig.streamMaxInbound;
+
+    /**
+     * 帧超过该字节数时拆分为分片, 与其他指令交错写出, 避免大指令阻塞同一连接上的小指令; 小于等于 0 表示不拆分
+     * <p>
+     * 接收端限制每个连接同时接收中的分片数与声明的 body 总长(netty.remoting.fragment.maxPending / maxPendingBytes), 超出时关闭连接
+     */
+    private int fragmentSize = NettySystemConfig.fragmentSize;
+
+    /**
+     * 合并 flush: 累计写出这么多条消息才 flush, 否则延后到本轮读取结束或 EventLoop 的下一次任务执行; 小于等于 0 表示不合并
+     */
+    private int flushMaxWrites = NettySystemConfig.flushMaxWrites;
+
+    /**
+     * 合并 flush: 累计写出这么多字节立即 flush, 小于等于 0 表示不限制
+     */
+    private int flushMaxBytes = NettySystemConfig.flushMaxBytes;
+
+    /**
+     * 合并 flush: 最多延后的微秒数, 即增加的延迟上限; 小于等于 0 表示延后到 EventLoop 的下一次任务执行
+     */
+    private long flushMaxDelayMicros = NettySystemConfig.flushMaxDelayMicros;
+
+    /**
+     * channel 不可写时异步与单向调用的处理方式, 高低水位见 writeBufferHighWaterMark / writeBufferLowWaterMark
+     */
+    private BackpressurePolicy backpressurePolicy = NettySystemConfig.backpressurePolicy;
+
+    /**
+     * DROP_OLDEST 策略下每个连接排队的单向调用上限
+     */
+    private int backpressureQueueSize = NettySystemConfig.backpressureQueueSize;
+
+    /**
+     * 编解码与分发直接在 IO 线程(EventLoop)中执行, 不再经过 workerThreads 线程池; 省去每条消息的线程切换, 适合小请求.
+     * 处理器仍在各自的线程池中执行, 认证器与未指定线程池的回调会在 IO 线程中执行, 不能阻塞
+     */
+    private boolean codecOnEventLoop = NettySystemConfig.codecOnEventLoop;
+
+    /**
+     * 使用 io_uring 传输(netty incubator), 需要 Linux 5.9 以上内核与对应平台的 native 包; 不可用时回退到 epoll / NIO
+     */
+    private boolean useIoUring = NettySystemConfig.useIoUring;
+
+    /**
+     * 虚拟线程模式(JDK 21+): 每个请求在独立的虚拟线程中处理, 不再使用注册处理器时指定的线程池, 适合处理器中有阻塞 IO 的场景;
+     * 低版本 JDK 忽略该配置
+     */
+    private boolean virtualThreads = NettySystemConfig.virtualThreads;
+
+    /**
+     * 同一连接(即同一登录)在同一个线程池上的请求按到达顺序逐个处理, 不同连接仍在处理器的线程池中并行; 需要按会话保序时不必再使用单线程池.
+     * 注册在不同线程池上的处理器之间不保证顺序
+     */
+    private boolean orderedDispatch = NettySystemConfig.orderedDispatch;
+
+    /**
+     * orderedDispatch 模式下每个连接排队等待处理的请求上限, 超出时响应繁忙
+     */
+    private int orderedDispatchQueueSize = NettySystemConfig.orderedDispatchQueueSize;
+
+    /**
+     * 内联处理器单次处理的时间预算(微秒), 处理结束后超过时打印警告, 不会中断处理器; 小于等于 0 表示不检查
+     */
+    private long inlineProcessorBudgetMicros = NettySystemConfig.inlineProcessorBudgetMicros;
+
+    /**
+     * 异步调用的响应回调在哪里执行
+     */
+    private CallbackMode callbackMode = NettySystemConfig.callbackMode;
+
+    /**
+     * CallbackMode.STRIPED / CHANNEL_STRIPED 模式下的单线程执行器数量, 小于等于 0 时使用 CPU 核数
+     */
+    private int callbackStripes = NettySystemConfig.callbackStripes;
+
+    /**
+     * 请求超时时间轮的刻度(毫秒), 即超时回调最多延迟的时间; 刻度相同的服务端与客户端共用一个时间轮
+     */
+    private long timeoutTickMillis = NettySystemConfig.timeoutTickMillis;
 }
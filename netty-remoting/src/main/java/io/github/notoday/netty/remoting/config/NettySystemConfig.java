@@ -16,6 +16,32 @@ public class NettySystemConfig {
 
     private static final String NETTY_REMOTING_FRAME_MAX_LENGTH = "netty.remoting.frameMaxLength";
 
+    private static final String NETTY_REMOTING_COMPRESSION_THRESHOLD = "netty.remoting.compression.threshold";
+    private static final String NETTY_REMOTING_COMPRESSION_TYPE = "netty.remoting.compression.type";
+
+    private static final String NETTY_REMOTING_HEADER_TABLE_SIZE = "netty.remoting.headerTable.size";
+    private static final String NETTY_REMOTING_HEADER_TABLE_INDEX_VALUES = "netty.remoting.headerTable.indexValues";
+
+    private static final String NETTY_REMOTING_STREAM_WINDOW = "netty.remoting.stream.window";
+    private static final String NETTY_REMOTING_STREAM_MAX_INBOUND = "netty.remoting.stream.maxInbound";
+    private static final String NETTY_REMOTING_FRAGMENT_SIZE = "netty.remoting.fragment.size";
+    private static final String NETTY_REMOTING_FRAGMENT_MAX_PENDING = "netty.remoting.fragment.maxPending";
+    private static final String NETTY_REMOTING_FRAGMENT_MAX_PENDING_BYTES = "netty.remoting.fragment.maxPendingBytes";
+    private static final String NETTY_REMOTING_FLUSH_MAX_WRITES = "netty.remoting.flush.maxWrites";
+    private static final String NETTY_REMOTING_FLUSH_MAX_BYTES = "netty.remoting.flush.maxBytes";
+    private static final String NETTY_REMOTING_FLUSH_MAX_DELAY_MICROS = "netty.remoting.flush.maxDelayMicros";
+    private static final String NETTY_REMOTING_BACKPRESSURE_POLICY = "netty.remoting.backpressure.policy";
+    private static final String NETTY_REMOTING_BACKPRESSURE_QUEUE_SIZE = "netty.remoting.backpressure.queueSize";
+    private static final String NETTY_REMOTING_CODEC_ON_EVENT_LOOP = "netty.remoting.codecOnEventLoop";
+    private static final String NETTY_REMOTING_USE_IO_URING = "netty.remoting.useIoUring";
+    private static final String NETTY_REMOTING_VIRTUAL_THREADS = "netty.remoting.virtualThreads";
+    private static final String NETTY_REMOTING_ORDERED_DISPATCH = "netty.remoting.orderedDispatch";
+    private static final String NETTY_REMOTING_ORDERED_DISPATCH_QUEUE_SIZE = "netty.remoting.orderedDispatch.queueSize";
+    private static final String NETTY_REMOTING_INLINE_PROCESSOR_BUDGET_MICROS = "netty.remoting.inlineProcessor.budgetMicros";
+    private static final String NETTY_REMOTING_CALLBACK_MODE = "netty.remoting.callback.mode";
+    private static final String NETTY_REMOTING_CALLBACK_STRIPES = "netty.remoting.callback.stripes";
+    private static final String NETTY_REMOTING_TIMEOUT_TICK_MILLIS = "netty.remoting.timeout.tickMillis";
+
     // Client
     private static final String NETTY_REMOTING_CLIENT_ASYNC_SEMAPHORE_VALUE = "netty.remoting.client.asyncSemaphoreValue";
     private static final String NETTY_REMOTING_CLIENT_ONEWAY_SEMAPHORE_VALUE = "netty.remoting.client.onewaySemaphoreValue";
@@ -23,6 +49,10 @@ public class NettySystemConfig {
     private static final String NETTY_REMOTING_CLIENT_CONNECT_TIMEOUT = "netty.remoting.client.connectTimeout";
     private static final String NETTY_REMOTING_CLIENT_CHANNEL_MAX_IDLE_SECONDS = "netty.remoting.client.channelMaxIdleTimeSeconds";
     private static final String NETTY_REMOTING_CLIENT_CLOSE_SOCKET_IF_TIMEOUT = "netty.remoting.client.closeSocketIfTimeout";
+    private static final String NETTY_REMOTING_CLIENT_USE_EPOLL = "netty.remoting.client.useEpoll";
+    private static final String NETTY_REMOTING_CLIENT_EPOLL_EDGE_TRIGGERED = "netty.remoting.client.epollEdgeTriggered";
+    private static final String NETTY_REMOTING_CLIENT_TCP_QUICK_ACK = "netty.remoting.client.tcpQuickAck";
+    private static final String NETTY_REMOTING_CLIENT_TCP_USER_TIMEOUT = "netty.remoting.client.tcpUserTimeout";
 
     // ----------------------------------------------------------------------
     public static int socketSndbufSize = Integer.parseInt(System.getProperty(NETTY_REMOTING_SOCKET_SNDBUF_SIZE, "0"));
@@ -31,6 +61,29 @@ public class NettySystemConfig {
     public static int writeBufferHighWaterMarkValue = Integer.parseInt(System.getProperty(NETTY_REMOTING_WRITE_BUFFER_HIGH_WATER_MARK_VALUE, "0"));
     public static int writeBufferLowWaterMarkValue = Integer.parseInt(System.getProperty(NETTY_REMOTING_WRITE_BUFFER_LOW_WATER_MARK_VALUE, "0"));
     public static int frameMaxLength = Integer.parseInt(System.getProperty(NETTY_REMOTING_FRAME_MAX_LENGTH, "16777216"));
+    public static int compressionThreshold = Integer.parseInt(System.getProperty(NETTY_REMOTING_COMPRESSION_THRESHOLD, "0"));
+    public static byte compressionType = Byte.parseByte(System.getProperty(NETTY_REMOTING_COMPRESSION_TYPE, "1"));
+    public static int headerTableSize = Integer.parseInt(System.getProperty(NETTY_REMOTING_HEADER_TABLE_SIZE, "64"));
+    public static boolean headerTableIndexValues = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_HEADER_TABLE_INDEX_VALUES, "false"));
+    public static int streamWindow = Integer.parseInt(System.getProperty(NETTY_REMOTING_STREAM_WINDOW, "16"));
+    public static int streamMaxInbound = Integer.parseInt(System.getProperty(NETTY_REMOTING_STREAM_MAX_INBOUND, "256"));
+    public static int fragmentSize = Integer.parseInt(System.getProperty(NETTY_REMOTING_FRAGMENT_SIZE, "262144"));
+    public static int fragmentMaxPending = Integer.parseInt(System.getProperty(NETTY_REMOTING_FRAGMENT_MAX_PENDING, "1024"));
+    public static long fragmentMaxPendingBytes = Long.parseLong(System.getProperty(NETTY_REMOTING_FRAGMENT_MAX_PENDING_BYTES, "268435456"));
+    public static int flushMaxWrites = Integer.parseInt(System.getProperty(NETTY_REMOTING_FLUSH_MAX_WRITES, "0"));
+    public static int flushMaxBytes = Integer.parseInt(System.getProperty(NETTY_REMOTING_FLUSH_MAX_BYTES, "65536"));
+    public static long flushMaxDelayMicros = Long.parseLong(System.getProperty(NETTY_REMOTING_FLUSH_MAX_DELAY_MICROS, "0"));
+    public static BackpressurePolicy backpressurePolicy = BackpressurePolicy.valueOf(System.getProperty(NETTY_REMOTING_BACKPRESSURE_POLICY, "NONE"));
+    public static int backpressureQueueSize = Integer.parseInt(System.getProperty(NETTY_REMOTING_BACKPRESSURE_QUEUE_SIZE, "1024"));
+    public static boolean codecOnEventLoop = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_CODEC_ON_EVENT_LOOP, "false"));
+    public static boolean useIoUring = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_USE_IO_URING, "false"));
+    public static boolean virtualThreads = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_VIRTUAL_THREADS, "false"));
+    public static boolean orderedDispatch = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_ORDERED_DISPATCH, "false"));
+    public static int orderedDispatchQueueSize = Integer.parseInt(System.getProperty(NETTY_REMOTING_ORDERED_DISPATCH_QUEUE_SIZE, "1024"));
+    public static long inlineProcessorBudgetMicros = Long.parseLong(System.getProperty(NETTY_REMOTING_INLINE_PROCESSOR_BUDGET_MICROS, "1000"));
+    public static CallbackMode callbackMode = CallbackMode.valueOf(System.getProperty(NETTY_REMOTING_CALLBACK_MODE, "EXECUTOR"));
+    public static int callbackStripes = Integer.parseInt(System.getProperty(NETTY_REMOTING_CALLBACK_STRIPES, "0"));
+    public static long timeoutTickMillis = Long.parseLong(System.getProperty(NETTY_REMOTING_TIMEOUT_TICK_MILLIS, "10"));
 
     public static int clientAsyncSemaphoreValue = Integer.parseInt(System.getProperty(NETTY_REMOTING_CLIENT_ASYNC_SEMAPHORE_VALUE, "65535"));
     public static int clientOnewaySemaphoreValue = Integer.parseInt(System.getProperty(NETTY_REMOTING_CLIENT_ONEWAY_SEMAPHORE_VALUE, "65535"));
@@ -38,4 +91,8 @@ public class NettySystemConfig {
     public static int clientConnectTimeout = Integer.parseInt(System.getProperty(NETTY_REMOTING_CLIENT_CONNECT_TIMEOUT, "3000"));
     public static int clientChannelMaxIdleSeconds = Integer.parseInt(System.getProperty(NETTY_REMOTING_CLIENT_CHANNEL_MAX_IDLE_SECONDS, "120"));
     public static boolean clientCloseSocketIfTimeout = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_CLIENT_CLOSE_SOCKET_IF_TIMEOUT, "true"));
+    public static boolean clientUseEpoll = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_CLIENT_USE_EPOLL, "true"));
+    public static boolean clientEpollEdgeTriggered = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_CLIENT_EPOLL_EDGE_TRIGGERED, "true"));
+    public static boolean clientTcpQuickAck = Boolean.parseBoolean(System.getProperty(NETTY_REMOTING_CLIENT_TCP_QUICK_ACK, "false"));
+    public static int clientTcpUserTimeout = Integer.parseInt(System.getProperty(NETTY_REMOTING_CLIENT_TCP_USER_TIMEOUT, "0"));
 }
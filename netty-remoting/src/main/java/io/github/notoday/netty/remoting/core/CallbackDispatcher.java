@@ -0,0 +1,77 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.config.CallbackMode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 分发异步调用的响应回调
+ * <p>
+ * ResponseFuture 本身就是任务, 直接交给执行器, 不再为每个响应创建包装对象; 信号量在 ResponseFuture 执行完回调后统一释放
+ *
+ * @author no-today
+ * @date 2023/10/21 10:30
+ */
+@Slf4j
+final class CallbackDispatcher {
+
+    private final CallbackMode mode;
+
+    /**
+     * EXECUTOR 模式下的回调线程池, 每次分发时获取, 以便调用方替换
+     */
+    private final Supplier<Executor> executorSupplier;
+
+    /**
+     * STRIPED / CHANNEL_STRIPED 模式下的执行器组, 由线程资源的持有者创建, 分发器不持有线程
+     */
+    private final Supplier<CallbackStripes> stripesSupplier;
+
+    CallbackDispatcher(CallbackMode mode, Supplier<Executor> executorSupplier, Supplier<CallbackStripes> stripesSupplier) {
+        this.mode = mode;
+        this.executorSupplier = executorSupplier;
+        this.stripesSupplier = stripesSupplier;
+    }
+
+    /**
+     * 没有回调的(同步调用)只释放信号量
+     */
+    void dispatch(ResponseFuture responseFuture) {
+        if (!responseFuture.hasCallback()) {
+            responseFuture.releaseSemaphore();
+            return;
+        }
+
+        log.debug("execute callback, req: {}, RTT: {}ms", responseFuture.getReqId(), responseFuture.getRTT());
+
+        try {
+            Executor executor = executor(responseFuture);
+            if (null != executor) {
+                executor.execute(responseFuture);
+                return;
+            }
+        } catch (RejectedExecutionException e) {
+            log.warn("execute callback in executor exception, maybe executor busy", e);
+        }
+
+        // IO_THREAD 模式, 或无法异步执行时在当前线程执行
+        responseFuture.run();
+    }
+
+    private Executor executor(ResponseFuture responseFuture) {
+        switch (this.mode) {
+            case IO_THREAD:
+                return null;
+            case STRIPED:
+                return this.stripesSupplier.get().select((int) responseFuture.getReqId());
+            case CHANNEL_STRIPED:
+                // 同一连接的回调落在同一个执行器上, 按响应到达的顺序执行
+                return this.stripesSupplier.get().select(responseFuture.getChannel().hashCode());
+            default:
+                return this.executorSupplier.get();
+        }
+    }
+}
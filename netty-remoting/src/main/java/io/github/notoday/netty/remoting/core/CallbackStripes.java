@@ -0,0 +1,42 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.common.RemotingUtil;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * STRIPED / CHANNEL_STRIPED 模式下的单线程执行器组, 同一个 key 总是落在同一个执行器上
+ * <p>
+ * 由线程资源的持有者(服务端、NettyClientResources)创建与关闭, 共享资源的客户端共用同一组
+ *
+ * @author no-today
+ * @date 2023/10/21 10:40
+ */
+final class CallbackStripes {
+
+    private final ExecutorService[] stripes;
+
+    /**
+     * @param stripes 执行器数量, 小于等于 0 时使用 CPU 核数
+     */
+    CallbackStripes(int stripes, String threadName) {
+        ThreadFactory threadFactory = RemotingUtil.newThreadFactory(threadName);
+        this.stripes = new ExecutorService[stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    Executor select(int key) {
+        return this.stripes[(key & Integer.MAX_VALUE) % this.stripes.length];
+    }
+
+    void shutdown() {
+        for (ExecutorService stripe : this.stripes) {
+            stripe.shutdown();
+        }
+    }
+}
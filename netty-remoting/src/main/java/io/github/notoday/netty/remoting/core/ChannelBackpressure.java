@@ -0,0 +1,174 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 连接级别的背压状态, 绑定在 channel 属性上
+ * <p>
+ * 等待方按 channel 的可写状态阻塞, 可写性变化时唤醒; 另外按固定间隔重新检查, 不依赖事件一定送达(例如等待方就在处理该事件的线程中).
+ * 使用 Lock 而不是对象监视器, 等待方是虚拟线程时不会占住载体线程
+ * <p>
+ * 排队的调用只在 channel 的 EventLoop 中写出: 可写性事件与入队可能在不同线程同时触发写出, 各自取出后写出的先后无法保证
+ *
+ * @author no-today
+ * @date 2023/10/19 14:30
+ */
+final class ChannelBackpressure {
+
+    private static final AttributeKey<ChannelBackpressure> BACKPRESSURE = AttributeKey.valueOf("_Backpressure");
+
+    /**
+     * 等待时重新检查可写状态的间隔
+     */
+    private static final long CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Channel channel;
+
+    /**
+     * 不可写期间排队的单向调用, 按到达顺序写出
+     */
+    private final Deque<PendingWrite> queue = new ArrayDeque<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition writable = this.lock.newCondition();
+
+    private ChannelBackpressure(Channel channel) {
+        this.channel = channel;
+    }
+
+    static ChannelBackpressure get(Channel channel) {
+        Attribute<ChannelBackpressure> attr = channel.attr(BACKPRESSURE);
+        ChannelBackpressure backpressure = attr.get();
+        if (backpressure == null) {
+            ChannelBackpressure created = new ChannelBackpressure(channel);
+            backpressure = attr.setIfAbsent(created);
+            if (backpressure == null) backpressure = created;
+        }
+        return backpressure;
+    }
+
+    /**
+     * 可写性变化或连接断开, 唤醒等待方并写出排队的调用; 连接断开时排队的调用写出失败, 由写出监听统一处理
+     */
+    static void signal(Channel channel) {
+        ChannelBackpressure backpressure = channel.attr(BACKPRESSURE).get();
+        if (backpressure != null) {
+            backpressure.wakeup();
+            backpressure.drain();
+        }
+    }
+
+    /**
+     * EventLoop 中不能阻塞, 直接返回当前状态
+     *
+     * @return 期限内是否变为可写
+     */
+    boolean awaitWritable(long timeoutMillis) throws InterruptedException {
+        if (this.channel.isWritable() || this.channel.eventLoop().inEventLoop()) {
+            return this.channel.isWritable();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.lock.lock();
+        try {
+            while (!this.channel.isWritable() && this.channel.isActive()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                this.writable.awaitNanos(Math.min(remaining, CHECK_INTERVAL_NANOS));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return this.channel.isWritable();
+    }
+
+    /**
+     * 已有排队的调用时, 新的调用也要排队以保持顺序
+     */
+    boolean shouldQueue() {
+        this.lock.lock();
+        try {
+            return !this.queue.isEmpty() || !this.channel.isWritable();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 排队, 超过上限时丢弃最旧的
+     */
+    void enqueue(PendingWrite write, int capacity) {
+        PendingWrite dropped = null;
+        this.lock.lock();
+        try {
+            if (this.queue.size() >= Math.max(1, capacity)) {
+                dropped = this.queue.poll();
+            }
+            this.queue.offer(write);
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (dropped != null) {
+            dropped.drop();
+        }
+        // 入队前可能已经变为可写, 不能只依赖之后的事件
+        if (this.channel.isWritable() || !this.channel.isActive()) {
+            drain();
+        }
+    }
+
+    private void wakeup() {
+        this.lock.lock();
+        try {
+            this.writable.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void drain() {
+        EventLoop eventLoop = this.channel.eventLoop();
+        if (!eventLoop.inEventLoop()) {
+            try {
+                eventLoop.execute(this::drain);
+                return;
+            } catch (RejectedExecutionException e) {
+                // EventLoop 已关闭, 连接不可用, 排队的调用写出失败即可, 不需要保证顺序
+            }
+        }
+
+        while (true) {
+            PendingWrite write;
+            this.lock.lock();
+            try {
+                if (this.channel.isActive() && !this.channel.isWritable()) return;
+                write = this.queue.poll();
+            } finally {
+                this.lock.unlock();
+            }
+            if (write == null) return;
+            write.write();
+        }
+    }
+
+    interface PendingWrite {
+
+        void write();
+
+        /**
+         * 被更新的调用挤出队列
+         */
+        void drop();
+    }
+}
@@ -0,0 +1,167 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并 flush, 减少 write(2) 系统调用
+ * <p>
+ * 每条指令都是 writeAndFlush, 高并发下同一连接的多次 flush 只需要一次系统调用. 收到 flush 后延后执行, 满足任一条件时真正 flush:
+ * - 累计写出 maxWrites 条消息, 或 maxBytes 字节
+ * - 正在读取时, 本轮读取结束(channelReadComplete)
+ * - 最多延后 maxDelayMicros 微秒, 为 0 时在 EventLoop 的下一次任务执行时
+ * - channel 变为不可写, 或关闭
+ * <p>
+ * 与 Netty 的 FlushConsolidationHandler 的区别: 后者只按 flush 次数合并, 且非读取期间的 flush 要么立即执行要么延后到下一次任务,
+ * 没有字节数与延后时长的上限, 所以这里单独实现
+ * <p>
+ * 必须加在 channel 的 EventLoop 上(不指定 EventExecutorGroup), 每个连接一个实例
+ *
+ * @author no-today
+ * @date 2023/10/19 10:05
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    private final int maxWrites;
+    private final long maxBytes;
+    private final long maxDelayMicros;
+
+    private final Runnable flushTask = this::flushPending;
+
+    private ChannelHandlerContext ctx;
+    private boolean readInProgress;
+
+    /**
+     * 已写出但还没有 flush 的消息
+     */
+    private int pendingWrites;
+    private long pendingBytes;
+
+    /**
+     * 收到了 flush 但延后执行
+     */
+    private boolean flushPending;
+    private Future<?> scheduledFlush;
+
+    /**
+     * @param maxWrites      累计写出的消息数上限
+     * @param maxBytes       累计写出的字节数上限, 小于等于 0 表示不限制
+     * @param maxDelayMicros flush 最多延后的微秒数, 小于等于 0 表示延后到 EventLoop 的下一次任务执行
+     */
+    public FlushCoalescingHandler(int maxWrites, long maxBytes, long maxDelayMicros) {
+        if (maxWrites <= 0) {
+            throw new IllegalArgumentException("maxWrites must be positive, but was " + maxWrites);
+        }
+        this.maxWrites = maxWrites;
+        this.maxBytes = maxBytes;
+        this.maxDelayMicros = maxDelayMicros;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushPending();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        this.pendingWrites++;
+        this.pendingBytes += size(msg);
+        ctx.write(msg, promise);
+
+        if (this.flushPending && (this.pendingWrites >= this.maxWrites || (this.maxBytes > 0 && this.pendingBytes >= this.maxBytes))) {
+            flushNow();
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        // 写出时可能已经越过高水位(先于 flush 触发 channelWritabilityChanged), 不再延后
+        if (!ctx.channel().isWritable() || this.pendingWrites >= this.maxWrites || (this.maxBytes > 0 && this.pendingBytes >= this.maxBytes)) {
+            flushNow();
+            return;
+        }
+
+        this.flushPending = true;
+        // 读取中的 flush 在 channelReadComplete 时一起执行
+        if (!this.readInProgress && this.scheduledFlush == null) {
+            this.scheduledFlush = this.maxDelayMicros > 0
+                    ? ctx.executor().schedule(this.flushTask, this.maxDelayMicros, TimeUnit.MICROSECONDS)
+                    : ctx.executor().submit(this.flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        this.readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        this.readInProgress = false;
+        flushPending();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // 出站缓冲达到高水位, 不再等待
+        if (!ctx.channel().isWritable()) {
+            flushPending();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushPending();
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushPending();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushPending();
+        ctx.close(promise);
+    }
+
+    private void flushPending() {
+        if (this.flushPending) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        if (this.scheduledFlush != null) {
+            this.scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+
+        this.flushPending = false;
+        this.pendingWrites = 0;
+        this.pendingBytes = 0;
+        this.ctx.flush();
+    }
+
+    private static long size(Object msg) {
+        if (msg instanceof ByteBuf) return ((ByteBuf) msg).readableBytes();
+        if (msg instanceof ByteBufHolder) return ((ByteBufHolder) msg).content().readableBytes();
+        return 0;
+    }
+}
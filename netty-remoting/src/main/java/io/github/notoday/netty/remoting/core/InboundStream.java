@@ -0,0 +1,246 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.NettyStreamProcessor;
+import io.github.notoday.netty.remoting.StreamReceiver;
+import io.github.notoday.netty.remoting.common.RemotingSystemCode;
+import io.github.notoday.netty.remoting.common.RemotingUtil;
+import io.github.notoday.netty.remoting.exception.RemotingRuntimeException;
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.github.notoday.netty.remoting.security.RemotingSecurityUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 接收中的流
+ * <p>
+ * 分片在 IO 线程入队, 在处理器线程池中按顺序消费; 每消费半个窗口的分片向发送方授予等量额度, 因此缓存的分片不超过一个窗口.
+ * 发送方不遵守额度时关闭连接; 线程池拒绝时响应繁忙并中止流, 不在 IO 线程中执行接收器
+ *
+ * @author no-today
+ * @date 2023/10/17 14:35
+ */
+@Slf4j
+public class InboundStream implements Runnable {
+
+    private final NettyRemotingAbstract remoting;
+    private final ChannelHandlerContext ctx;
+    private final int reqId;
+    private final NettyStreamProcessor processor;
+    private final ExecutorService executor;
+    private final int window;
+
+    private final Queue<RemotingCommand> chunks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * 已收到还未消费的分片数(不含头部与结束帧), 不超过窗口
+     */
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    // 以下只在 IO 线程中访问
+    private boolean headerReceived;
+    private boolean overflowed;
+    private boolean rejected;
+
+    // 以下只在消费线程中访问
+    private boolean headerConsumed;
+    private RemotingCommand header;
+    private StreamReceiver receiver;
+    private String login;
+    private boolean closed;
+    private int consumed;
+
+    /**
+     * @param processor 为 null 表示没有对应的处理器, 头部到达时响应失败并丢弃后续分片
+     * @param window    接收窗口, 分片数
+     */
+    public InboundStream(NettyRemotingAbstract remoting, ChannelHandlerContext ctx, int reqId, NettyStreamProcessor processor, ExecutorService executor, int window) {
+        this.remoting = remoting;
+        this.ctx = ctx;
+        this.reqId = reqId;
+        this.processor = processor;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * 在 IO 线程中调用
+     *
+     * @return 线程池拒绝, 流已中止, 调用方应将其移除
+     */
+    public boolean offer(RemotingCommand chunk) {
+        if (this.rejected) {
+            chunk.release();
+            return false;
+        }
+
+        if (!this.headerReceived) {
+            this.headerReceived = true;
+        } else if (!chunk.isStreamEnd() && this.buffered.incrementAndGet() > this.window) {
+            // 发送方没有遵守额度, 连接断开时中止流
+            this.buffered.decrementAndGet();
+            chunk.release();
+            if (!this.overflowed) {
+                this.overflowed = true;
+                log.warn("stream chunks exceed the receive window {}, close channel, reqId: {}", this.window, this.reqId);
+                RemotingUtil.closeChannel(this.ctx.channel());
+            }
+            return true;
+        }
+
+        this.chunks.offer(chunk);
+        if (this.wip.getAndIncrement() == 0) {
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                reject();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 没有消费线程在运行, 可以在 IO 线程中访问消费状态; wip 不再归零, 之后的分片直接丢弃
+     */
+    private void reject() {
+        this.rejected = true;
+        log.warn("stream executor busy, abort stream, reqId: {}", this.reqId);
+
+        RemotingCommand chunk;
+        while ((chunk = this.chunks.poll()) != null) {
+            chunk.release();
+        }
+
+        if (!this.closed) {
+            this.closed = true;
+            this.remoting.response(this.ctx, RemotingCommand.failure(this.reqId, RemotingSystemCode.SYSTEM_BUSY, "[OVERLOAD] system busy, try later"));
+        }
+    }
+
+    /**
+     * 连接断开, 通知接收器
+     */
+    public void abort(String reason) {
+        offer(new RemotingCommand().setReqId(this.reqId).markStreamEndType().setMessage(reason));
+    }
+
+    @Override
+    public void run() {
+        int missed = 1;
+        do {
+            RemotingCommand chunk;
+            while ((chunk = this.chunks.poll()) != null) {
+                if (!this.headerConsumed) {
+                    this.headerConsumed = true;
+                } else if (!chunk.isStreamEnd()) {
+                    this.buffered.decrementAndGet();
+                }
+
+                try {
+                    handle(chunk);
+                } finally {
+                    chunk.release();
+                }
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void handle(RemotingCommand chunk) {
+        if (this.closed) return;
+
+        boolean aborted = chunk.isStreamEnd() && chunk.getMessage() != null;
+        try {
+            if (this.header == null) {
+                // 头部还没到就中止了
+                if (aborted) {
+                    this.closed = true;
+                    return;
+                }
+
+                open(chunk);
+                if (this.closed) return;
+            } else if (aborted) {
+                this.closed = true;
+                this.receiver.onError(new RemotingRuntimeException("stream aborted: " + chunk.getMessage()));
+                return;
+            } else {
+                deliver(chunk);
+            }
+
+            if (chunk.isStreamEnd()) {
+                complete();
+            } else if (chunk != this.header && ++this.consumed >= Math.max(1, this.window / 2)) {
+                this.ctx.writeAndFlush(RemotingCommand.credit(this.reqId, this.consumed));
+                this.consumed = 0;
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void open(RemotingCommand header) throws Exception {
+        this.header = header;
+        if (this.processor == null) {
+            this.closed = true;
+            this.remoting.response(this.ctx, RemotingCommand.failure(this.reqId, RemotingSystemCode.REQUEST_CODE_NOT_SUPPORTED, "[REQUEST_CODE_NOT_SUPPORTED] stream code " + header.getCode() + " not supported"));
+            return;
+        }
+
+        this.login = RemotingSecurityUtils.getCurrentLogin(this.ctx.channel());
+        this.remoting.doBeforeRPCHooks(this.login, header);
+        this.receiver = this.processor.openStream(this.ctx, header);
+
+        // 头部之后才开放窗口
+        if (!header.isStreamEnd()) {
+            this.ctx.writeAndFlush(RemotingCommand.credit(this.reqId, this.window));
+        }
+    }
+
+    private void deliver(RemotingCommand chunk) throws Exception {
+        ByteBuf bodyBuffer = chunk.getBodyBuffer();
+        if (bodyBuffer != null) {
+            this.receiver.onChunk(bodyBuffer);
+        } else if (chunk.getBody() != null && chunk.getBody().length > 0) {
+            this.receiver.onChunk(Unpooled.wrappedBuffer(chunk.getBody()));
+        }
+    }
+
+    private void complete() throws Exception {
+        this.closed = true;
+
+        RemotingCommand response = this.receiver.onComplete();
+        this.remoting.doAfterRPCHooks(this.login, this.header, response);
+        if (response == null) {
+            response = RemotingCommand.success(this.reqId);
+        }
+
+        response.setReqId(this.reqId);
+        response.markResponseType();
+        this.remoting.response(this.ctx, response);
+    }
+
+    private void fail(Throwable e) {
+        log.error("process stream exception, reqId: {}", this.reqId, e);
+
+        // 之后的分片直接丢弃, 发送方收到响应后会中止发送
+        this.closed = true;
+        if (this.receiver != null) {
+            try {
+                this.receiver.onError(e);
+            } catch (Throwable ex) {
+                log.warn("stream receiver onError exception", ex);
+            }
+        }
+        this.remoting.response(this.ctx, RemotingCommand.failure(this.reqId, RemotingSystemCode.SYSTEM_ERROR, e.getMessage()));
+    }
+}
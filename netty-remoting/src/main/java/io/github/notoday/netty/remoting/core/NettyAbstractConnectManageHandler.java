@@ -53,12 +53,26 @@ public abstract class NettyAbstractConnectManageHandler extends ChannelDuplexHan
         String remoteAddress = RemotingUtil.parseChannelRemoteAddr(ctx.channel());
         log.debug("NETTY {} PIPELINE: [{}] channelInactive", tag, remoteAddress);
         super.channelInactive(ctx);
+        ChannelBackpressure.signal(ctx.channel());
 
         if (this.eventListener != null) {
             this.eventListener.onChannelClose(remoteAddress, ctx.channel());
         }
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        boolean writable = ctx.channel().isWritable();
+        String remoteAddress = RemotingUtil.parseChannelRemoteAddr(ctx.channel());
+        log.debug("NETTY {} PIPELINE: [{}] channelWritabilityChanged, writable: {}", tag, remoteAddress, writable);
+        ChannelBackpressure.signal(ctx.channel());
+        super.channelWritabilityChanged(ctx);
+
+        if (this.eventListener != null) {
+            this.eventListener.onChannelWritabilityChanged(remoteAddress, ctx.channel(), writable);
+        }
+    }
+
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof IdleStateEvent) {
@@ -0,0 +1,146 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.common.RemotingUtil;
+import io.github.notoday.netty.remoting.config.NettyClientConfig;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 客户端的线程资源: EventLoop、编解码线程池、回调线程池(含 STRIPED 模式的执行器组)、虚拟线程执行器与超时时间轮(同一 JVM 中按刻度共用, 见 TimeoutTimers)
+ * <p>
+ * 可以在多个 NettyRemotingClient 之间共享, 连接很多服务端时不必每个客户端各建一套线程. 引用计数管理生命周期:
+ * 创建者持有一个引用, 每个使用它的客户端持有一个引用(客户端关闭时释放), 全部释放后关闭线程
+ * <pre>
+ * NettyClientResources resources = new NettyClientResources(config, 4);
+ * NettyRemotingClient a = new NettyRemotingClient(configA, null, resources);
+ * NettyRemotingClient b = new NettyRemotingClient(configB, null, resources);
+ * resources.release(); // 之后随 a、b 关闭
+ * </pre>
+ * 传输实现、workerThreads、callbackExecutorThreads、callbackStripes、codecOnEventLoop、timeoutTickMillis 取自创建时的配置, 客户端各自的配置中这几项不再生效
+ *
+ * @author no-today
+ * @date 2023/10/20 14:20
+ */
+@Slf4j
+public class NettyClientResources extends AbstractReferenceCounted {
+
+    private final NettyTransport transport;
+    private final EventLoopGroup eventLoopGroupSelector;
+    private final DefaultEventExecutorGroup defaultEventExecutorGroup;
+    private final ExecutorService callbackExecutor;
+    private final long timeoutTickMillis;
+    private final Timer timeoutTimer;
+
+    /**
+     * 开启了虚拟线程模式的客户端执行请求处理器, 首个开启的客户端创建; JDK 21 以下为 null
+     */
+    private volatile boolean virtualThreadsResolved;
+    private ExecutorService virtualThreadExecutor;
+
+    /**
+     * STRIPED / CHANNEL_STRIPED 模式的回调执行器组, 首次使用时创建, 执行器数量取自创建时的配置
+     */
+    private final int callbackStripesSize;
+    private volatile CallbackStripes callbackStripes;
+    private boolean deallocated;
+
+    /**
+     * @param selectorThreads EventLoop 线程数, 共享时按连接数与负载设置
+     */
+    public NettyClientResources(NettyClientConfig config, int selectorThreads) {
+        this.transport = NettyTransport.select(config.isUseIoUring(), config.isUseEpoll());
+        log.debug("use {}", this.transport);
+        this.eventLoopGroupSelector = this.transport.newEventLoopGroup(selectorThreads, "NettyClient", "Selector");
+        // 为 null 时 pipeline 中的处理器在 channel 的 EventLoop 中执行
+        this.defaultEventExecutorGroup = config.isCodecOnEventLoop() ? null : new DefaultEventExecutorGroup(config.getWorkerThreads(), RemotingUtil.newThreadFactory("NettyClientWorker"));
+        this.callbackExecutor = Executors.newFixedThreadPool(Math.max(4, config.getCallbackExecutorThreads()), RemotingUtil.newThreadFactory("NettyClientCallbackExecutor"));
+        this.timeoutTickMillis = config.getTimeoutTickMillis();
+        this.timeoutTimer = TimeoutTimers.acquire(this.timeoutTickMillis);
+        this.callbackStripesSize = config.getCallbackStripes();
+    }
+
+    public NettyClientResources(NettyClientConfig config) {
+        this(config, 1);
+    }
+
+    NettyTransport transport() {
+        return this.transport;
+    }
+
+    EventLoopGroup eventLoopGroupSelector() {
+        return this.eventLoopGroupSelector;
+    }
+
+    DefaultEventExecutorGroup defaultEventExecutorGroup() {
+        return this.defaultEventExecutorGroup;
+    }
+
+    ExecutorService callbackExecutor() {
+        return this.callbackExecutor;
+    }
+
+    Timer timeoutTimer() {
+        return this.timeoutTimer;
+    }
+
+    /**
+     * 只在开启了虚拟线程模式的客户端用到时才创建
+     */
+    ExecutorService virtualThreadExecutor() {
+        if (!this.virtualThreadsResolved) {
+            synchronized (this) {
+                if (!this.virtualThreadsResolved) {
+                    if (this.deallocated) throw new RejectedExecutionException("client resources released");
+                    this.virtualThreadExecutor = RemotingUtil.newVirtualThreadPerTaskExecutor("NettyClientProcessorVirtualThread");
+                    this.virtualThreadsResolved = true;
+                }
+            }
+        }
+        return this.virtualThreadExecutor;
+    }
+
+    /**
+     * 共享资源的客户端可能使用不同的回调模式, 只在有客户端用到时才创建线程
+     */
+    CallbackStripes callbackStripes() {
+        CallbackStripes stripes = this.callbackStripes;
+        if (stripes == null) {
+            synchronized (this) {
+                stripes = this.callbackStripes;
+                if (stripes == null) {
+                    if (this.deallocated) throw new RejectedExecutionException("client resources released");
+                    this.callbackStripes = stripes = new CallbackStripes(this.callbackStripesSize, "NettyClientCallbackStripe");
+                }
+            }
+        }
+        return stripes;
+    }
+
+    @Override
+    protected void deallocate() {
+        TimeoutTimers.release(this.timeoutTickMillis);
+
+        this.eventLoopGroupSelector.shutdownGracefully();
+        if (this.defaultEventExecutorGroup != null) this.defaultEventExecutorGroup.shutdownGracefully();
+        this.callbackExecutor.shutdown();
+
+        synchronized (this) {
+            this.deallocated = true;
+            if (this.callbackStripes != null) this.callbackStripes.shutdown();
+            if (this.virtualThreadExecutor != null) this.virtualThreadExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        return this;
+    }
+}
@@ -1,19 +1,32 @@
 package io.github.notoday.netty.remoting.core;
 
 import io.github.notoday.netty.remoting.NettyRequestProcessor;
+import io.github.notoday.netty.remoting.NettyStreamProcessor;
 import io.github.notoday.netty.remoting.RPCHook;
 import io.github.notoday.netty.remoting.common.ErrorInfo;
 import io.github.notoday.netty.remoting.common.Pair;
 import io.github.notoday.netty.remoting.common.RemotingSystemCode;
+import io.github.notoday.netty.remoting.common.RemotingUtil;
 import io.github.notoday.netty.remoting.common.SemaphoreReleaseOnlyOnce;
+import io.github.notoday.netty.remoting.compression.Compressor;
+import io.github.notoday.netty.remoting.compression.CompressorTable;
+import io.github.notoday.netty.remoting.config.BackpressurePolicy;
+import io.github.notoday.netty.remoting.config.NettySocketConfig;
 import io.github.notoday.netty.remoting.exception.RemotingConnectException;
 import io.github.notoday.netty.remoting.exception.RemotingSendRequestException;
 import io.github.notoday.netty.remoting.exception.RemotingTimeoutException;
 import io.github.notoday.netty.remoting.exception.RemotingTooMuchRequestException;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
 import io.github.notoday.netty.remoting.security.RemotingSecurityUtils;
+import io.github.notoday.netty.remoting.serializer.Serializer;
+import io.github.notoday.netty.remoting.serializer.SerializerTable;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timer;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
@@ -26,6 +39,18 @@ import java.util.concurrent.*;
 @Slf4j
 public abstract class NettyRemotingAbstract {
 
+    private static final AttributeKey<ConcurrentMap<Integer, InboundStream>> INBOUND_STREAMS = AttributeKey.valueOf("_InboundStreams");
+
+    /**
+     * 连接上正在进行(未响应)的请求, 连接断开时全部失败
+     */
+    private static final AttributeKey<ResponseTable> RESPONSE_TABLE = AttributeKey.valueOf("_ResponseTable");
+
+    /**
+     * 连接上发送中的流, 用于接收对端授予的额度; reqId 只在连接内唯一
+     */
+    private static final AttributeKey<ConcurrentMap<Integer, StreamSender>> STREAM_SENDERS = AttributeKey.valueOf("_StreamSenders");
+
     /**
      * 异步命令信号量, 控制异步调用的并发数量, 从而保护系统内存
      */
@@ -37,12 +62,7 @@ public abstract class NettyRemotingAbstract {
     protected final Semaphore semaphoreOneway;
 
     /**
-     * 缓存所有正在进行(未响应)的请求
-     */
-    protected final ConcurrentMap<Integer /* request id */, ResponseFuture> responseTable = new ConcurrentHashMap<>(128);
-
-    /**
-     * 通过请求编码找到请求处理器
+     * 通过请求编码找到请求处理器, 线程池为 null 表示内联处理器
      */
     protected final Map<Integer /* request code */, Pair<NettyRequestProcessor, ExecutorService>> processorTable = new HashMap<>(32);
 
@@ -52,14 +72,87 @@ public abstract class NettyRemotingAbstract {
      */
     protected Pair<NettyRequestProcessor, ExecutorService> defaultRequestProcessor;
 
+    /**
+     * 通过请求编码找到流式请求处理器
+     */
+    protected final Map<Integer /* request code */, Pair<NettyStreamProcessor, ExecutorService>> streamProcessorTable = new HashMap<>(8);
+
+    /**
+     * 接收流的窗口, 分片数
+     */
+    protected final int streamWindow;
+
+    /**
+     * 每个连接同时接收中的流的上限
+     */
+    protected final int streamMaxInbound;
+
+    /**
+     * channel 不可写时异步与单向调用的处理方式
+     */
+    protected final BackpressurePolicy backpressurePolicy;
+    protected final int backpressureQueueSize;
+
+    /**
+     * 虚拟线程模式, 请求处理器在 getVirtualThreadExecutor 中执行, 每个请求一个虚拟线程
+     */
+    protected final boolean virtualThreads;
+
+    /**
+     * 同一连接的请求按到达顺序处理
+     */
+    protected final boolean orderedDispatch;
+    protected final int orderedDispatchQueueSize;
+
+    /**
+     * 内联处理器单次处理的时间预算(微秒)
+     */
+    protected final long inlineProcessorBudgetMicros;
+
+    /**
+     * 分发异步调用的响应回调
+     */
+    protected final CallbackDispatcher callbackDispatcher;
+
+    /**
+     * 调用方指定的回调执行器, 为 null 时使用 getCallbackExecutor
+     */
+    private volatile Executor customCallbackExecutor;
+
     /**
      * 自定义的 RPC Hooks
      */
     protected List<RPCHook> rpcHooks = new ArrayList<>();
 
-    public NettyRemotingAbstract(int permitsAsync, int permitsOneway) {
+    /**
+     * 通过帧头中的序列化器编号找到序列化器
+     */
+    protected final SerializerTable serializerTable = new SerializerTable();
+
+    /**
+     * 通过压缩 body 中的算法编号找到压缩算法
+     */
+    protected final CompressorTable compressorTable = new CompressorTable();
+
+    public NettyRemotingAbstract(int permitsAsync, int permitsOneway, NettySocketConfig config) {
         this.semaphoreAsync = new Semaphore(permitsAsync, true);
         this.semaphoreOneway = new Semaphore(permitsOneway, true);
+        this.streamWindow = config.getStreamWindow();
+        this.streamMaxInbound = config.getStreamMaxInbound();
+        this.backpressurePolicy = config.getBackpressurePolicy();
+        this.backpressureQueueSize = config.getBackpressureQueueSize();
+        this.orderedDispatch = config.isOrderedDispatch();
+        this.orderedDispatchQueueSize = config.getOrderedDispatchQueueSize();
+        this.inlineProcessorBudgetMicros = config.getInlineProcessorBudgetMicros();
+        this.callbackDispatcher = new CallbackDispatcher(config.getCallbackMode(), () -> {
+            Executor executor = this.customCallbackExecutor;
+            return executor != null ? executor : getCallbackExecutor();
+        }, this::getCallbackStripes);
+        this.virtualThreads = config.isVirtualThreads();
+    }
+
+    public NettyRemotingAbstract(int permitsAsync, int permitsOneway) {
+        this(permitsAsync, permitsOneway, new NettySocketConfig());
     }
 
     /**
@@ -68,14 +161,64 @@ public abstract class NettyRemotingAbstract {
      */
     public abstract ExecutorService getCallbackExecutor();
 
+    /**
+     * 请求超时使用的时间轮
+     */
+    protected abstract Timer getTimeoutTimer();
+
+    /**
+     * STRIPED / CHANNEL_STRIPED 模式下的回调执行器组
+     */
+    abstract CallbackStripes getCallbackStripes();
+
+    /**
+     * 虚拟线程模式下执行请求处理器; 为 null (JDK 21 以下)时使用注册处理器时指定的线程池
+     */
+    abstract ExecutorService getVirtualThreadExecutor();
+
+    /**
+     * 指定回调执行器, 替代默认的回调线程池; 只在 CallbackMode.EXECUTOR 模式下生效
+     */
+    public void setCallbackExecutor(Executor executor) {
+        this.customCallbackExecutor = executor;
+    }
+
     public void registerProcessor(final int requestCode, final ExecutorService executor, final NettyRequestProcessor processor) {
+        checkExecutor(executor);
         this.processorTable.put(requestCode, new Pair<>(processor, executor));
     }
 
     public void registerDefaultProcessor(final ExecutorService executor, final NettyRequestProcessor processor) {
+        checkExecutor(executor);
         this.defaultRequestProcessor = new Pair<>(processor, executor);
     }
 
+    public void registerInlineProcessor(final int requestCode, final NettyRequestProcessor processor) {
+        // 线程池为 null 表示内联执行, 只能通过这里注册
+        this.processorTable.put(requestCode, new Pair<>(processor, null));
+    }
+
+    /**
+     * 线程池为 null 在处理表中表示内联执行, 普通注册不能传 null, 避免误注册成在 pipeline 线程中执行
+     */
+    private static void checkExecutor(ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null, use registerInlineProcessor to run on the pipeline thread");
+        }
+    }
+
+    public void registerStreamProcessor(final int requestCode, final ExecutorService executor, final NettyStreamProcessor processor) {
+        this.streamProcessorTable.put(requestCode, new Pair<>(processor, executor));
+    }
+
+    public void registerSerializer(final Serializer serializer) {
+        this.serializerTable.register(serializer);
+    }
+
+    public void registerCompressor(final Compressor compressor) {
+        this.compressorTable.register(compressor);
+    }
+
     public void registerRPCHook(final RPCHook rpcHook) {
         if (rpcHook != null && !this.rpcHooks.contains(rpcHook)) {
             this.rpcHooks.add(rpcHook);
@@ -100,13 +243,148 @@ public abstract class NettyRemotingAbstract {
 
     public void processMessageReceived(ChannelHandlerContext ctx, RemotingCommand cmd) throws Exception {
         if (cmd == null) return;
-        if (cmd.isResponse()) {
+        if (cmd.isBatch()) {
+            processBatchCommand(ctx, cmd);
+        } else if (cmd.isStream()) {
+            processStreamCommand(ctx, cmd);
+        } else if (cmd.isCredit()) {
+            processCreditCommand(ctx, cmd);
+        } else if (cmd.isResponse()) {
             processResponseCommand(ctx, cmd);
         } else {
             processRequestCommand(ctx, cmd);
         }
     }
 
+    /**
+     * 拆出子指令后逐条分发
+     */
+    public void processBatchCommand(ChannelHandlerContext ctx, RemotingCommand batch) throws Exception {
+        List<RemotingCommand> commands;
+        try {
+            commands = batch.unbatch();
+        } finally {
+            batch.release();
+        }
+
+        for (RemotingCommand cmd : commands) {
+            processMessageReceived(ctx, cmd);
+        }
+    }
+
+    /**
+     * 流的分片按 reqId 交给对应的接收中的流, 第一个分片(头部)创建流
+     */
+    public void processStreamCommand(ChannelHandlerContext ctx, RemotingCommand chunk) {
+        ConcurrentMap<Integer, InboundStream> streams = inboundStreams(ctx.channel());
+
+        int reqId = chunk.getReqId();
+        InboundStream stream = chunk.isStreamEnd() ? streams.remove(reqId) : streams.get(reqId);
+        if (stream == null) {
+            if (!chunk.isStreamEnd() && streams.size() >= this.streamMaxInbound) {
+                chunk.release();
+                response(ctx, RemotingCommand.failure(reqId, RemotingSystemCode.SYSTEM_BUSY, "[OVERLOAD] too many inbound streams, max: " + this.streamMaxInbound));
+                return;
+            }
+
+            Pair<NettyStreamProcessor, ExecutorService> pair = this.streamProcessorTable.get(chunk.getCode());
+            if (pair == null) {
+                stream = new InboundStream(this, ctx, reqId, null, ctx.executor(), this.streamWindow);
+            } else {
+                stream = new InboundStream(this, ctx, reqId, pair.getObj1(), pair.getObj2(), this.streamWindow);
+            }
+
+            if (!chunk.isStreamEnd()) streams.put(reqId, stream);
+        }
+
+        if (!stream.offer(chunk)) {
+            streams.remove(reqId, stream);
+        }
+    }
+
+    public void processCreditCommand(ChannelHandlerContext ctx, RemotingCommand credit) {
+        ConcurrentMap<Integer, StreamSender> senders = ctx.channel().attr(STREAM_SENDERS).get();
+        StreamSender sender = senders == null ? null : senders.get(credit.getReqId());
+        if (sender != null) {
+            sender.grant(credit.getCode());
+        }
+    }
+
+    /**
+     * 连接断开, 中止所有接收中的流
+     */
+    protected void closeInboundStreams(Channel channel) {
+        ConcurrentMap<Integer, InboundStream> streams = channel.attr(INBOUND_STREAMS).getAndSet(null);
+        if (streams == null) return;
+
+        for (InboundStream stream : streams.values()) {
+            stream.abort("channel closed");
+        }
+    }
+
+    private static ConcurrentMap<Integer, InboundStream> inboundStreams(Channel channel) {
+        Attribute<ConcurrentMap<Integer, InboundStream>> attr = channel.attr(INBOUND_STREAMS);
+        ConcurrentMap<Integer, InboundStream> streams = attr.get();
+        if (streams == null) {
+            streams = new ConcurrentHashMap<>(8);
+            ConcurrentMap<Integer, InboundStream> older = attr.setIfAbsent(streams);
+            if (older != null) streams = older;
+        }
+        return streams;
+    }
+
+    /**
+     * 连接断开, 正在进行的请求立即以连接断开失败, 不再等待超时
+     */
+    protected void failPendingRequests(Channel channel) {
+        ResponseTable table = channel.attr(RESPONSE_TABLE).get();
+        if (table == null || table.isEmpty()) return;
+
+        List<ResponseFuture> pending = new ArrayList<>();
+        table.clear(pending);
+
+        RemotingConnectException cause = new RemotingConnectException("connection lost, " + RemotingUtil.parseChannelRemoteAddr(channel));
+        log.warn("{}, fail {} pending requests", cause.getMessage(), pending.size());
+        for (ResponseFuture future : pending) {
+            abortStream(channel, (int) future.getReqId(), "connection lost");
+            future.setSendRequestOk(false);
+            future.setCause(cause);
+            future.putResponse(null);
+            executionCallback(future);
+        }
+    }
+
+    /**
+     * reqId 由连接分配, 覆盖请求中原有的
+     */
+    private static int assignReqId(ResponseTable table, RemotingCommand request) {
+        int reqId = table.nextReqId();
+        request.setReqId(reqId);
+        return reqId;
+    }
+
+    private static ConcurrentMap<Integer, StreamSender> streamSenders(Channel channel) {
+        Attribute<ConcurrentMap<Integer, StreamSender>> attr = channel.attr(STREAM_SENDERS);
+        ConcurrentMap<Integer, StreamSender> senders = attr.get();
+        if (senders == null) {
+            senders = new ConcurrentHashMap<>(8);
+            ConcurrentMap<Integer, StreamSender> older = attr.setIfAbsent(senders);
+            if (older != null) senders = older;
+        }
+        return senders;
+    }
+
+    static ResponseTable responseTable(Channel channel) {
+        Attribute<ResponseTable> attr = channel.attr(RESPONSE_TABLE);
+        ResponseTable table = attr.get();
+        if (table == null) {
+            table = new ResponseTable(16, 8);
+            ResponseTable older = attr.setIfAbsent(table);
+            if (older != null) table = older;
+        }
+        return table;
+    }
+
     public void processRequestCommand(ChannelHandlerContext ctx, RemotingCommand request) throws Exception {
         Pair<NettyRequestProcessor, ExecutorService> pair = this.processorTable.getOrDefault(request.getCode(), this.defaultRequestProcessor);
 
@@ -115,46 +393,36 @@ public abstract class NettyRemotingAbstract {
         final boolean oneway = request.isOneway();
 
         if (pair == null) {
+            request.release();
             response(ctx, RemotingCommand.failure(reqId, RemotingSystemCode.REQUEST_CODE_NOT_SUPPORTED, "[REQUEST_CODE_NOT_SUPPORTED] request code " + request.getCode() + " not supported"));
             return;
         }
 
         NettyRequestProcessor requestProcessor = pair.getObj1();
         if (requestProcessor.rejectRequest()) {
+            request.release();
             response(ctx, RemotingCommand.failure(reqId, RemotingSystemCode.COMMAND_NOT_AVAILABLE_NOW, "[COMMAND_UNAVAILABLE_NOW] this command is currently unavailable"));
             return;
         }
 
-        RequestTask task = new RequestTask(() -> {
-            try {
-                String login = RemotingSecurityUtils.getCurrentLogin(ctx.channel());
-                this.doBeforeRPCHooks(login, request);
-
-                // 默认实现实际上还是同步
-                requestProcessor.asyncProcessRequest(ctx, request, response -> {
-                    NettyRemotingAbstract.this.doAfterRPCHooks(login, request, response);
-
-                    if (!oneway && response != null) {
-                        response.setReqId(reqId);
-                        response.markResponseType();
+        if (pair.getObj2() == null) {
+            processInline(ctx, request, requestProcessor, reqId, oneway);
+            return;
+        }
 
-                        response(ctx, response);
-                    }
-                });
-            } catch (Throwable e) {
-                log.error("process request exception", e);
-                log.error("{}", request);
+        RequestTask task = new RequestTask(() -> doProcessRequest(ctx, request, requestProcessor, reqId, oneway), ctx.channel(), request);
 
-                // 单向消息不需要响应
-                if (!oneway) {
-                    response(ctx, RemotingCommand.failure(reqId, RemotingSystemCode.SYSTEM_ERROR, e.getMessage()));
-                }
-            }
-        }, ctx.channel(), request);
+        Executor executor = this.virtualThreads ? getVirtualThreadExecutor() : null;
+        if (executor == null) executor = pair.getObj2();
+        if (this.orderedDispatch) {
+            executor = SerialExecutor.of(ctx.channel(), executor, this.orderedDispatchQueueSize);
+        }
 
         try {
-            pair.getObj2().submit(task);
+            executor.execute(task);
         } catch (RejectedExecutionException e) {
+            request.release();
+
             // 10s print once log
             if (System.currentTimeMillis() % 10000 == 0) {
                 log.warn("too many requests and system thread pool busy, RejectedExecutionException");
@@ -167,109 +435,137 @@ public abstract class NettyRemotingAbstract {
         }
     }
 
-    private void response(ChannelHandlerContext ctx, RemotingCommand response) {
-        ctx.writeAndFlush(response);
+    /**
+     * 内联处理器在当前线程执行, 不创建任务也不排队; 超出预算只在处理完成后打印警告, 不会中断处理器
+     */
+    private void processInline(ChannelHandlerContext ctx, RemotingCommand request, NettyRequestProcessor requestProcessor, int reqId, boolean oneway) {
+        int code = request.getCode();
+        long beginTime = System.nanoTime();
+
+        doProcessRequest(ctx, request, requestProcessor, reqId, oneway);
+
+        long costMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - beginTime);
+        if (this.inlineProcessorBudgetMicros > 0 && costMicros > this.inlineProcessorBudgetMicros) {
+            log.warn("inline processor exceeded time budget, it blocks the pipeline thread, code: {}, cost: {}us, budget: {}us", code, costMicros, this.inlineProcessorBudgetMicros);
+        }
+    }
+
+    private void doProcessRequest(ChannelHandlerContext ctx, RemotingCommand request, NettyRequestProcessor requestProcessor, int reqId, boolean oneway) {
+        try {
+            String login = RemotingSecurityUtils.getCurrentLogin(ctx.channel());
+            this.doBeforeRPCHooks(login, request);
+
+            // 默认实现实际上还是同步
+            requestProcessor.asyncProcessRequest(ctx, request, response -> {
+                NettyRemotingAbstract.this.doAfterRPCHooks(login, request, response);
+
+                boolean writeResponse = !oneway && response != null;
+                if (writeResponse) {
+                    response.setReqId(reqId);
+                    response.markResponseType();
+
+                    response(ctx, response);
+                } else if (response != null) {
+                    // 单向请求的响应直接丢弃
+                    response.release();
+                }
+
+                // 原样返回请求时, body 随响应写出后再释放
+                if (!writeResponse || response != request) request.release();
+            });
+        } catch (Throwable e) {
+            log.error("process request exception", e);
+            log.error("{}", request.summary());
+            request.release();
+
+            // 单向消息不需要响应
+            if (!oneway) {
+                response(ctx, RemotingCommand.failure(reqId, RemotingSystemCode.SYSTEM_ERROR, e.getMessage()));
+            }
+        }
+    }
+
+    void response(ChannelHandlerContext ctx, RemotingCommand response) {
+        if (response.getBodyBuffer() == null) {
+            ctx.writeAndFlush(response);
+        } else {
+            ctx.writeAndFlush(response).addListener(future -> response.release());
+        }
     }
 
     public void processResponseCommand(ChannelHandlerContext ctx, RemotingCommand response) throws Exception {
         int reqId = response.getReqId();
-        ResponseFuture future = this.responseTable.remove(reqId);
+        ResponseFuture future = responseTable(ctx.channel()).remove(reqId);
+        abortStream(ctx.channel(), reqId, "response received before end of stream");
         if (null != future) {
             future.putResponse(response);
             executionCallback(future);
-            future.releaseSemaphore();
         } else {
+            response.release();
             log.warn("receive response command, but not matched any request, reqId: {}", response.getReqId());
         }
     }
 
     /**
-     * 执行响应回调
-     * <p>
-     * 先尝试异步执行, 若无法异步则在当前线程执行回调
+     * 执行响应回调并释放信号量, 执行位置见 CallbackMode
      */
     protected void executionCallback(final ResponseFuture responseFuture) {
-        if (null == responseFuture.getResponseCallback()) return;
-
-        log.debug("execute callback, req: {}, RTT: {}ms", responseFuture.getReqId(), responseFuture.getRTT());
-
-        boolean runInThisThread = false;
-        ExecutorService executor = getCallbackExecutor();
-        if (null != executor) {
-            try {
-                executor.submit(() -> {
-                    try {
-                        responseFuture.executeCallback();
-                    } catch (Exception e) {
-                        log.warn("execute callback in executor exception, and callback throw", e);
-                    } finally {
-                        responseFuture.releaseSemaphore();
-                    }
-                });
-            } catch (Exception e) {
-                runInThisThread = true;
-                log.warn("execute callback in executor exception, maybe executor busy", e);
-            }
-        } else {
-            runInThisThread = true;
-        }
-
-        if (runInThisThread) {
-            try {
-                responseFuture.executeCallback();
-            } catch (Throwable e) {
-                log.warn("executeCallback Exception", e);
-            } finally {
-                responseFuture.releaseSemaphore();
-            }
-        }
+        this.callbackDispatcher.dispatch(responseFuture);
     }
 
     /**
-     * 扫描已经超时的请求, 并进行回调通知
+     * 在时间轮上登记请求的超时, 到期时仍未响应则移除并回调超时; 收到响应时取消
      */
-    protected void scanResponseTable() {
-        List<ResponseFuture> rfList = new LinkedList<>();
-        Iterator<Map.Entry<Integer, ResponseFuture>> it = responseTable.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Integer, ResponseFuture> next = it.next();
-            ResponseFuture rep = next.getValue();
-
-            if (rep.getRequestTimestamp() + rep.getTimeoutMillis() <= System.currentTimeMillis()) {
-                rep.releaseSemaphore();
-                it.remove();
-                rfList.add(rep);
-
-                log.warn("remove timeout request, {}", rep);
+    private void scheduleTimeout(ResponseTable table, int reqId, ResponseFuture responseFuture, long timeoutMillis) {
+        responseFuture.setTimeout(getTimeoutTimer().newTimeout(timeout -> {
+            if (table.remove(reqId, responseFuture)) {
+                abortStream(responseFuture.getChannel(), reqId, "timeout");
+                log.warn("remove timeout request, {}", responseFuture);
+                executionCallback(responseFuture);
             }
-        }
+        }, timeoutMillis, TimeUnit.MILLISECONDS));
+    }
 
-        for (ResponseFuture future : rfList) {
-            executionCallback(future);
-        }
+    /**
+     * 发送前同步失败时撤销登记的请求与超时, 否则超时到期时会再次回调
+     *
+     * @return 请求仍在等待中; false 表示超时或取消已经处理过, 不应再回调
+     */
+    private static boolean unregister(ResponseTable table, int reqId, ResponseFuture responseFuture) {
+        boolean removed = table.remove(reqId, responseFuture);
+        responseFuture.cancelTimeout();
+        responseFuture.releaseSemaphore();
+        return removed;
     }
 
     protected RemotingCommand invokeSyncImpl(final Channel channel, final RemotingCommand request, final long timeoutMillis) throws InterruptedException, RemotingConnectException, RemotingSendRequestException, RemotingTimeoutException {
-        ifChannelUnavailableThrowException(channel);
+        try {
+            ifChannelUnavailableThrowException(channel);
+        } catch (RemotingConnectException e) {
+            request.release();
+            throw e;
+        }
 
-        int reqId = request.getReqId();
+        ResponseTable table = responseTable(channel);
+        int reqId = assignReqId(table, request);
         ResponseFuture responseFuture = new ResponseFuture(channel, reqId, timeoutMillis);
-        this.responseTable.put(reqId, responseFuture);
+        table.put(reqId, responseFuture);
 
-        String login = RemotingSecurityUtils.getCurrentLogin(channel);
-        this.doBeforeRPCHooks(login, request);
+        try {
+            String login = RemotingSecurityUtils.getCurrentLogin(channel);
+            this.doBeforeRPCHooks(login, request);
 
-        channel.writeAndFlush(request).addListener(future -> {
-            if (future.isSuccess()) {
-                responseFuture.setSendRequestOk(true);
-            } else {
-                responseFuture.setSendRequestOk(false);
-                responseFuture.setCause(future.cause());
-                responseFuture.putResponse(null);   // 触发闭锁
-            }
-        });
+            channel.writeAndFlush(request).addListener(future -> {
+                request.release();
+                if (future.isSuccess()) {
+                    responseFuture.setSendRequestOk(true);
+                } else {
+                    responseFuture.setSendRequestOk(false);
+                    responseFuture.setCause(future.cause());
+                    responseFuture.putResponse(null);   // 触发闭锁
+                }
+            });
 
-        try {
             // 同步请求, 阻塞等待响应
             RemotingCommand response = responseFuture.waitResponse(timeoutMillis);
             this.doAfterRPCHooks(login, request, response);
@@ -278,6 +574,8 @@ public abstract class NettyRemotingAbstract {
                 // 发送成功未响应则是对端处理超时
                 if (responseFuture.isSendRequestOk()) {
                     throw new RemotingTimeoutException(timeoutMillis, responseFuture.getCause());
+                } else if (responseFuture.getCause() instanceof RemotingConnectException) {
+                    throw (RemotingConnectException) responseFuture.getCause();
                 } else {
                     throw new RemotingSendRequestException("failed to send request to channel", responseFuture.getCause());
                 }
@@ -285,13 +583,32 @@ public abstract class NettyRemotingAbstract {
 
             log.debug("return response, reqId: {}, RTT: {}ms", responseFuture.getReqId(), responseFuture.getRTT());
 
+            // 响应交由调用方持有, 转为堆内存后释放帧缓冲
+            response.getBody();
+            response.release();
             return response;
         } finally {
-            this.responseTable.remove(reqId);
+            table.remove(reqId, responseFuture);
         }
     }
 
     protected void invokeAsyncImpl(final Channel channel, final RemotingCommand request, final long timeoutMillis, final ResultCallback<RemotingCommand> resultCallback) {
+        invokeAsync0(channel, request, timeoutMillis, resultCallback, null);
+    }
+
+    /**
+     * 异步调用, 结果由 ResponseFuture 直接完成返回的 future; 取消时移除等待中的请求并释放信号量
+     */
+    protected CompletableFuture<RemotingCommand> invokeFutureImpl(final Channel channel, final RemotingCommand request, final long timeoutMillis) {
+        ResponsePromise promise = new ResponsePromise();
+        invokeAsync0(channel, request, timeoutMillis, null, promise);
+        return promise;
+    }
+
+    /**
+     * resultCallback 与 promise 二选一
+     */
+    private void invokeAsync0(final Channel channel, final RemotingCommand request, final long timeoutMillis, final ResultCallback<RemotingCommand> resultCallback, final ResponsePromise promise) {
         try {
             ifChannelUnavailableThrowException(channel);
 
@@ -300,35 +617,69 @@ public abstract class NettyRemotingAbstract {
                 throw new RemotingTooMuchRequestException(info);
             }
 
-            int reqId = request.getReqId();
-            ResponseFuture responseFuture = new ResponseFuture(channel, reqId, timeoutMillis, resultCallback, new SemaphoreReleaseOnlyOnce(this.semaphoreAsync));
-            this.responseTable.put(reqId, responseFuture);
+            SemaphoreReleaseOnlyOnce once = new SemaphoreReleaseOnlyOnce(this.semaphoreAsync);
+            try {
+                awaitWritable(channel, timeoutMillis, "invokeAsync");
+            } catch (Throwable e) {
+                once.release();
+                throw e;
+            }
+
+            ResponseTable table = responseTable(channel);
+            int reqId = assignReqId(table, request);
+            ResponseFuture responseFuture = promise == null
+                    ? new ResponseFuture(channel, reqId, timeoutMillis, resultCallback, once)
+                    : new ResponseFuture(channel, reqId, timeoutMillis, once, promise);
+            table.put(reqId, responseFuture);
+            scheduleTimeout(table, reqId, responseFuture, timeoutMillis);
+            if (promise != null) {
+                promise.onCancel(() -> {
+                    if (table.remove(reqId, responseFuture)) {
+                        responseFuture.cancelTimeout();
+                        responseFuture.releaseSemaphore();
+                        log.debug("request cancelled, reqId: {}", reqId);
+                    }
+                });
+            }
 
             try {
                 String login = RemotingSecurityUtils.getCurrentLogin(channel);
                 this.doBeforeRPCHooks(login, request);
 
                 channel.writeAndFlush(request).addListener(future -> {
+                    request.release();
                     if (future.isSuccess()) {
                         responseFuture.setSendRequestOk(true);
                     } else {
                         log.warn("send a request command to channel failed", future.cause());
 
-                        this.responseTable.remove(reqId);
-                        responseFuture.setSendRequestOk(false);
-                        responseFuture.setCause(future.cause());
-                        responseFuture.putResponse(null);
-                        executionCallback(responseFuture);
+                        if (table.remove(reqId, responseFuture)) {
+                            responseFuture.setSendRequestOk(false);
+                            responseFuture.setCause(future.cause());
+                            responseFuture.putResponse(null);
+                            executionCallback(responseFuture);
+                        }
                     }
                 });
             } catch (Exception e) {
+                // 已被取消时回调已经执行过
+                if (!unregister(table, reqId, responseFuture)) {
+                    request.release();
+                    return;
+                }
+
                 String s = "write a request command to channel failed";
                 log.warn(s, e);
                 throw new RemotingSendRequestException(s, e);
             }
 
         } catch (Throwable e) {
-            resultCallback.onFailure(new ErrorInfo(request.getReqId(), -1, e.getMessage(), e));
+            request.release();
+            if (promise != null) {
+                promise.completeExceptionally(e);
+            } else {
+                resultCallback.onFailure(new ErrorInfo(request.getReqId(), -1, e.getMessage(), e));
+            }
         }
     }
 
@@ -342,14 +693,19 @@ public abstract class NettyRemotingAbstract {
                 throw new RemotingTooMuchRequestException(info);
             }
 
-            int reqId = request.getReqId();
+            int reqId = assignReqId(responseTable(channel), request);
             ResponseFuture responseFuture = new ResponseFuture(channel, reqId, timeoutMillis, null, new SemaphoreReleaseOnlyOnce(this.semaphoreOneway));
 
             try {
+                if (this.backpressurePolicy != BackpressurePolicy.DROP_OLDEST) {
+                    awaitWritable(channel, timeoutMillis, "invokeOneway");
+                }
+
                 String login = RemotingSecurityUtils.getCurrentLogin(channel);
                 this.doBeforeRPCHooks(login, request);
 
-                channel.writeAndFlush(request).addListener(future -> {
+                Runnable write = () -> channel.writeAndFlush(request).addListener(future -> {
+                    request.release();
                     responseFuture.releaseSemaphore();
                     if (!future.isSuccess()) {
                         String message = "send a request command to channel failed";
@@ -360,6 +716,20 @@ public abstract class NettyRemotingAbstract {
                     }
                 });
 
+                if (this.backpressurePolicy == BackpressurePolicy.DROP_OLDEST) {
+                    writeOrQueue(channel, write, () -> {
+                        request.release();
+                        responseFuture.releaseSemaphore();
+                        String message = "oneway request dropped, channel not writable";
+                        resultCallback.onFailure(new ErrorInfo(reqId, -1, message, new RemotingTooMuchRequestException(message)));
+                    });
+                } else {
+                    write.run();
+                }
+
+            } catch (RemotingTooMuchRequestException e) {
+                responseFuture.releaseSemaphore();
+                throw e;
             } catch (Exception e) {
                 responseFuture.releaseSemaphore();
                 String message = "write a request command to channel failed";
@@ -367,10 +737,172 @@ public abstract class NettyRemotingAbstract {
                 throw new RemotingSendRequestException(message, e);
             }
         } catch (Throwable e) {
+            request.release();
             resultCallback.onFailure(new ErrorInfo(request.getReqId(), -1, e.getMessage(), e));
         }
     }
 
+    /**
+     * 批量单向调用: 多条指令合并为一个帧, 一次写出, 只占用一个信号量
+     */
+    protected void invokeOnewayBatchImpl(final Channel channel, final List<RemotingCommand> requests, final long timeoutMillis, final ResultCallback<Void> resultCallback) {
+        RemotingCommand batch = null;
+        try {
+            ifChannelUnavailableThrowException(channel);
+
+            if (!this.semaphoreOneway.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                String info = String.format("invokeOnewayBatchImpl tryAcquire semaphore timeout, %dms, waiting thread nums: %d semaphoreOnewayValue: %d", timeoutMillis, this.semaphoreOneway.getQueueLength(), this.semaphoreOneway.availablePermits());
+                throw new RemotingTooMuchRequestException(info);
+            }
+
+            SemaphoreReleaseOnlyOnce once = new SemaphoreReleaseOnlyOnce(this.semaphoreOneway);
+            try {
+                awaitWritable(channel, timeoutMillis, "invokeOnewayBatch");
+            } catch (Throwable e) {
+                once.release();
+                throw e;
+            }
+
+            try {
+                ResponseTable table = responseTable(channel);
+                String login = RemotingSecurityUtils.getCurrentLogin(channel);
+                for (RemotingCommand request : requests) {
+                    request.markOnewayRPC();
+                    assignReqId(table, request);
+                    this.doBeforeRPCHooks(login, request);
+                }
+
+                final RemotingCommand envelope = batch = RemotingCommand.batch(channel.alloc(), requests);
+                assignReqId(table, envelope);
+                channel.writeAndFlush(envelope).addListener(future -> {
+                    envelope.release();
+                    once.release();
+                    if (!future.isSuccess()) {
+                        String message = "send a batch command to channel failed";
+                        log.warn(message, future.cause());
+                        resultCallback.onFailure(new ErrorInfo(envelope.getReqId(), -1, message, future.cause()));
+                    } else {
+                        resultCallback.onSuccess(null);
+                    }
+                });
+            } catch (Exception e) {
+                once.release();
+                String message = "write a batch command to channel failed";
+                log.warn(message, e);
+                throw new RemotingSendRequestException(message, e);
+            }
+        } catch (Throwable e) {
+            if (batch != null) {
+                batch.release();
+            } else {
+                requests.forEach(RemotingCommand::release);
+            }
+            resultCallback.onFailure(new ErrorInfo(batch != null ? batch.getReqId() : -1, -1, e.getMessage(), e));
+        }
+    }
+
+    /**
+     * 流式调用: 请求作为流的头部, 内容从 input 逐个分片读取发送, 受对端授予的额度控制; 对端消费完所有分片后以同一个 reqId 响应
+     * <p>
+     * timeoutMillis 覆盖整个传输过程
+     */
+    protected void invokeStreamImpl(final Channel channel, final RemotingCommand request, final ChunkedInput<ByteBuf> input, final long timeoutMillis, final ResultCallback<RemotingCommand> resultCallback) {
+        try {
+            ifChannelUnavailableThrowException(channel);
+
+            if (!this.semaphoreAsync.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                String info = String.format("invokeStream tryAcquire semaphore timeout, %dms, waiting thread nums: %d semaphoreAsyncValue: %d", timeoutMillis, this.semaphoreAsync.getQueueLength(), this.semaphoreAsync.availablePermits());
+                throw new RemotingTooMuchRequestException(info);
+            }
+
+            ResponseTable table = responseTable(channel);
+            int reqId = assignReqId(table, request);
+            ResponseFuture responseFuture = new ResponseFuture(channel, reqId, timeoutMillis, resultCallback, new SemaphoreReleaseOnlyOnce(this.semaphoreAsync));
+            table.put(reqId, responseFuture);
+            scheduleTimeout(table, reqId, responseFuture, timeoutMillis);
+
+            ConcurrentMap<Integer, StreamSender> senders = streamSenders(channel);
+            try {
+                String login = RemotingSecurityUtils.getCurrentLogin(channel);
+                this.doBeforeRPCHooks(login, request);
+
+                StreamSender sender = new StreamSender(channel, request, input, () -> senders.remove(reqId), cause -> {
+                    senders.remove(reqId);
+                    if (table.remove(reqId, responseFuture)) {
+                        responseFuture.setSendRequestOk(false);
+                        responseFuture.setCause(cause);
+                        responseFuture.putResponse(null);
+                        executionCallback(responseFuture);
+                    }
+                });
+                senders.put(reqId, sender);
+                sender.start();
+            } catch (Throwable e) {
+                senders.remove(reqId);
+                if (!unregister(table, reqId, responseFuture)) {
+                    request.release();
+                    return;
+                }
+                throw e;
+            }
+        } catch (Throwable e) {
+            request.release();
+            try {
+                input.close();
+            } catch (Exception ex) {
+                log.warn("close stream input exception", ex);
+            }
+            resultCallback.onFailure(new ErrorInfo(request.getReqId(), -1, e.getMessage(), e));
+        }
+    }
+
+    private static void abortStream(Channel channel, int reqId, String reason) {
+        ConcurrentMap<Integer, StreamSender> senders = channel.attr(STREAM_SENDERS).get();
+        if (senders == null || senders.isEmpty()) return;
+
+        StreamSender sender = senders.remove(reqId);
+        if (sender != null) {
+            sender.abort(reason);
+        }
+    }
+
+    /**
+     * 按背压策略等待 channel 可写; DROP_OLDEST 对需要等待的调用同 WAIT
+     */
+    private void awaitWritable(Channel channel, long timeoutMillis, String method) throws RemotingTooMuchRequestException, InterruptedException {
+        if (this.backpressurePolicy == BackpressurePolicy.NONE || channel.isWritable()) return;
+
+        if (this.backpressurePolicy == BackpressurePolicy.FAIL_FAST) {
+            throw new RemotingTooMuchRequestException(method + " channel not writable, " + RemotingUtil.parseChannelRemoteAddr(channel));
+        }
+        if (!ChannelBackpressure.get(channel).awaitWritable(timeoutMillis)) {
+            throw new RemotingTooMuchRequestException(String.format("%s channel not writable in %dms, %s", method, timeoutMillis, RemotingUtil.parseChannelRemoteAddr(channel)));
+        }
+    }
+
+    /**
+     * 不可写时在本端排队, 队列满时丢弃最旧的
+     */
+    private void writeOrQueue(Channel channel, Runnable write, Runnable drop) {
+        ChannelBackpressure backpressure = ChannelBackpressure.get(channel);
+        if (!backpressure.shouldQueue()) {
+            write.run();
+            return;
+        }
+
+        backpressure.enqueue(new ChannelBackpressure.PendingWrite() {
+            @Override
+            public void write() {
+                write.run();
+            }
+
+            @Override
+            public void drop() {
+                drop.run();
+            }
+        }, this.backpressureQueueSize);
+    }
+
     private void ifChannelUnavailableThrowException(Channel channel) throws RemotingConnectException {
         if (null == channel || !channel.isActive()) {
             throw new RemotingConnectException("channel unavailable");
@@ -10,25 +10,30 @@ import io.github.notoday.netty.remoting.exception.RemotingRuntimeException;
 import io.github.notoday.netty.remoting.exception.RemotingSendRequestException;
 import io.github.notoday.netty.remoting.exception.RemotingTimeoutException;
 import io.github.notoday.netty.remoting.protocol.Any;
+import io.github.notoday.netty.remoting.protocol.FragmentWriteHandler;
+import io.github.notoday.netty.remoting.protocol.HeaderTable;
 import io.github.notoday.netty.remoting.protocol.NettyDecoder;
 import io.github.notoday.netty.remoting.protocol.NettyEncoder;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
 import io.github.notoday.netty.remoting.security.AuthenticationToken;
 import io.github.notoday.netty.remoting.ssl.OpenSslProvider;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.stream.ChunkedInput;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.Timer;
+import io.netty.incubator.channel.uring.IOUringChannelOption;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -41,40 +46,59 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
     private final NettyClientConfig config;
 
     private final Bootstrap bootstrap;
+    private final NettyTransport transport;
     private final EventLoopGroup eventLoopGroupSelector;
     private final DefaultEventExecutorGroup defaultEventExecutorGroup;
     private final ExecutorService callbackExecutor;
-    private final Timer timer = new Timer("ClientHouseKeepingService", true);
+    private final NettyClientResources resources;
     private final ChannelEventListener channelEventListener;
     private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final AtomicBoolean shutdown = new AtomicBoolean(false);
 
     private Channel channel;
 
     // sharable handlers
-    private NettyDecoder protocDecoder;
     private NettyEncoder protocEncoder;
 
     private NettyClientConnectManageHandler nettyClientConnectManageHandler;
     private NettyClientHandler nettyClientHandler;
 
-    public NettyRemotingClient(NettyClientConfig config, ChannelEventListener channelEventListener) {
-        super(config.getAsyncSemaphoreValue(), config.getOnewaySemaphoreValue());
-        this.config = config.clone();
-        this.channelEventListener = channelEventListener;
+    /**
+     * @param resources 共享的线程资源, 客户端持有一个引用并在关闭时释放
+     */
+    public NettyRemotingClient(NettyClientConfig config, ChannelEventListener channelEventListener, NettyClientResources resources) {
+        this(config, channelEventListener, resources, false);
+    }
 
-        this.bootstrap = new Bootstrap();
-        this.callbackExecutor = Executors.newFixedThreadPool(Math.max(4, config.getCallbackExecutorThreads()), RemotingUtil.newThreadFactory("NettyClientCallbackExecutor"));
-        this.eventLoopGroupSelector = new NioEventLoopGroup(1, RemotingUtil.newThreadFactory("NettyClientSelector"));
-        this.defaultEventExecutorGroup = new DefaultEventExecutorGroup(config.getWorkerThreads(), RemotingUtil.newThreadFactory("NettyClientWorker"));
+    public NettyRemotingClient(NettyClientConfig config, ChannelEventListener channelEventListener) {
+        this(config, channelEventListener, new NettyClientResources(config), true);
     }
 
     public NettyRemotingClient(NettyClientConfig config) {
         this(config, null);
     }
 
+    /**
+     * @param owned 独占的资源, 创建时的引用直接交给客户端; 否则客户端另外持有一个引用
+     */
+    private NettyRemotingClient(NettyClientConfig config, ChannelEventListener channelEventListener, NettyClientResources resources, boolean owned) {
+        super(config.getAsyncSemaphoreValue(), config.getOnewaySemaphoreValue(), config);
+        this.config = config.clone();
+        this.channelEventListener = channelEventListener;
+
+        this.bootstrap = new Bootstrap();
+        this.resources = owned ? resources : (NettyClientResources) resources.retain();
+        this.transport = resources.transport();
+        this.eventLoopGroupSelector = resources.eventLoopGroupSelector();
+        this.defaultEventExecutorGroup = resources.defaultEventExecutorGroup();
+        this.callbackExecutor = resources.callbackExecutor();
+        if (config.isVirtualThreads() && resources.virtualThreadExecutor() == null) {
+            log.warn("virtual threads require JDK 21+, fallback to processor executors, java.version: {}", System.getProperty("java.version"));
+        }
+    }
+
     private void prepareSharableHandlers() {
-        this.protocDecoder = new NettyDecoder();
-        this.protocEncoder = new NettyEncoder();
+        this.protocEncoder = new NettyEncoder(this.compressorTable, this.config.getCompressionType(), this.config.getCompressionThreshold(), this.config.getFragmentSize());
 
         this.nettyClientConnectManageHandler = new NettyClientConnectManageHandler();
         this.nettyClientHandler = new NettyClientHandler();
@@ -85,7 +109,7 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
             prepareSharableHandlers();
 
             Bootstrap handler = this.bootstrap.group(this.eventLoopGroupSelector)
-                    .channel(NioSocketChannel.class)
+                    .channel(this.transport.channelClass())
                     .option(ChannelOption.TCP_NODELAY, true)
                     .option(ChannelOption.SO_KEEPALIVE, false)
                     .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, this.config.getConnectTimeoutMillis())
@@ -96,8 +120,15 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
                                 ch.pipeline().addLast(OpenSslProvider.client().newHandler(ch.alloc()));
                             }
 
+                            if (NettyRemotingClient.this.config.getFlushMaxWrites() > 0) {
+                                ch.pipeline().addLast(new FlushCoalescingHandler(NettyRemotingClient.this.config.getFlushMaxWrites(), NettyRemotingClient.this.config.getFlushMaxBytes(), NettyRemotingClient.this.config.getFlushMaxDelayMicros()));
+                            }
+                            if (NettyRemotingClient.this.config.getFragmentSize() > 0) {
+                                ch.pipeline().addLast(NettyRemotingClient.this.defaultEventExecutorGroup, new FragmentWriteHandler());
+                            }
+
                             ch.pipeline().addLast(NettyRemotingClient.this.defaultEventExecutorGroup,
-                                    NettyRemotingClient.this.protocDecoder,
+                                    new NettyDecoder(NettyRemotingClient.this.serializerTable, NettyRemotingClient.this.compressorTable, NettyRemotingClient.this.config.getHeaderTableSize()),
                                     NettyRemotingClient.this.protocEncoder,
                                     new IdleStateHandler(0, 0, NettyRemotingClient.this.config.getChannelMaxIdleSeconds()),
                                     NettyRemotingClient.this.nettyClientConnectManageHandler,
@@ -106,6 +137,24 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
                         }
                     });
 
+            if (this.transport == NettyTransport.EPOLL) {
+                handler.option(EpollChannelOption.EPOLL_MODE, this.config.isEpollEdgeTriggered() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+                if (this.config.isTcpQuickAck()) {
+                    handler.option(EpollChannelOption.TCP_QUICKACK, true);
+                }
+                if (this.config.getTcpUserTimeoutMillis() > 0) {
+                    log.info("client set TCP_USER_TIMEOUT to {}", this.config.getTcpUserTimeoutMillis());
+                    handler.option(EpollChannelOption.TCP_USER_TIMEOUT, this.config.getTcpUserTimeoutMillis());
+                }
+            } else if (this.transport == NettyTransport.IO_URING) {
+                if (this.config.isTcpQuickAck()) {
+                    handler.option(IOUringChannelOption.TCP_QUICKACK, true);
+                }
+                if (this.config.getTcpUserTimeoutMillis() > 0) {
+                    log.info("client set TCP_USER_TIMEOUT to {}", this.config.getTcpUserTimeoutMillis());
+                    handler.option(IOUringChannelOption.TCP_USER_TIMEOUT, this.config.getTcpUserTimeoutMillis());
+                }
+            }
             if (this.config.getSocketSndBufSize() > 0) {
                 log.info("client set SO_SNDBUF to {}", this.config.getSocketSndBufSize());
                 handler.option(ChannelOption.SO_SNDBUF, this.config.getSocketSndBufSize());
@@ -118,28 +167,17 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
                 log.info("client set netty WRITE_BUFFER_WATER_MARK to {},{}", this.config.getWriteBufferLowWaterMark(), this.config.getWriteBufferHighWaterMark());
                 handler.option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(this.config.getWriteBufferLowWaterMark(), this.config.getWriteBufferHighWaterMark()));
             }
-
-            this.timer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        scanResponseTable();
-                    } catch (Exception e) {
-                        log.error("scanResponseTable exception", e);
-                    }
-                }
-            }, 1000, 1000);
         }
     }
 
     @Override
     public void shutdown() {
-        this.timer.cancel();
+        if (!this.shutdown.compareAndSet(false, true)) return;
+
         if (this.channel != null) RemotingUtil.closeChannel(this.channel);
 
-        this.eventLoopGroupSelector.shutdownGracefully();
-        this.defaultEventExecutorGroup.shutdownGracefully();
-        this.callbackExecutor.shutdown();
+        // 共享时其他客户端仍在使用, 最后一个引用释放时才关闭线程
+        this.resources.release();
     }
 
     private Channel createChannel() throws RemotingConnectException {
@@ -158,8 +196,15 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
 
         try {
             this.channel = createChannel();
-            return invokeSync(RemotingCommand.request(RemotingSystemCode.AUTHENTICATION,
-                    Any.pack(new AuthenticationToken().setToken(token).setLogin(login))), timeoutMillis);
+            RemotingCommand response = invokeSync(RemotingCommand.request(RemotingSystemCode.AUTHENTICATION,
+                    Any.pack(new AuthenticationToken().setToken(token).setLogin(login).setHeaderTableSize(this.config.getHeaderTableSize()))), timeoutMillis);
+
+            // 服务端告知了字典容量才启用, 取双方较小值
+            if (response.success() && response.getExtFields() != null) {
+                int serverHeaderTableSize = Integer.parseInt(response.getExtFields().getOrDefault(HeaderTable.HEADER_TABLE_SIZE, "0"));
+                HeaderTable.enable(this.channel, Math.min(this.config.getHeaderTableSize(), serverHeaderTableSize), this.config.isHeaderTableIndexValues());
+            }
+            return response;
         } catch (RemotingConnectException e) {
             return RemotingCommand.failure(-1, RemotingSystemCode.REQUEST_FAILED, RemotingUtil.exceptionSimpleDesc(e));
         } catch (Exception e) {
@@ -181,6 +226,21 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
         }
     }
 
+    @Override
+    protected Timer getTimeoutTimer() {
+        return this.resources.timeoutTimer();
+    }
+
+    @Override
+    CallbackStripes getCallbackStripes() {
+        return this.resources.callbackStripes();
+    }
+
+    @Override
+    ExecutorService getVirtualThreadExecutor() {
+        return this.resources.virtualThreadExecutor();
+    }
+
     @Override
     public ExecutorService getCallbackExecutor() {
         return this.callbackExecutor;
@@ -196,18 +256,40 @@ public class NettyRemotingClient extends NettyRemotingAbstract implements Remoti
         super.invokeAsyncImpl(this.channel, request, timeoutMillis, resultCallback);
     }
 
+    @Override
+    public CompletableFuture<RemotingCommand> invokeAsync(RemotingCommand request, long timeoutMillis) {
+        return super.invokeFutureImpl(this.channel, request, timeoutMillis);
+    }
+
     @Override
     public void invokeOneway(RemotingCommand request, long timeoutMillis, ResultCallback<Void> resultCallback) {
         super.invokeOnewayImpl(this.channel, request, timeoutMillis, resultCallback);
 
     }
 
+    @Override
+    public void invokeOnewayBatch(List<RemotingCommand> requests, long timeoutMillis, ResultCallback<Void> resultCallback) {
+        super.invokeOnewayBatchImpl(this.channel, requests, timeoutMillis, resultCallback);
+    }
+
+    @Override
+    public void invokeStream(RemotingCommand request, ChunkedInput<ByteBuf> input, long timeoutMillis, ResultCallback<RemotingCommand> resultCallback) {
+        super.invokeStreamImpl(this.channel, request, input, timeoutMillis, resultCallback);
+    }
+
     @ChannelHandler.Sharable
     class NettyClientHandler extends SimpleChannelInboundHandler<RemotingCommand> {
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, RemotingCommand msg) throws Exception {
             processMessageReceived(ctx, msg);
         }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            closeInboundStreams(ctx.channel());
+            failPendingRequests(ctx.channel());
+            super.channelInactive(ctx);
+        }
     }
 
     @ChannelHandler.Sharable
@@ -3,11 +3,13 @@ package io.github.notoday.netty.remoting.core;
 import io.github.notoday.netty.remoting.ChannelEventListener;
 import io.github.notoday.netty.remoting.RemotingServer;
 import io.github.notoday.netty.remoting.common.RemotingUtil;
+import io.github.notoday.netty.remoting.config.CallbackMode;
 import io.github.notoday.netty.remoting.config.NettyServerConfig;
 import io.github.notoday.netty.remoting.exception.RemotingConnectException;
 import io.github.notoday.netty.remoting.exception.RemotingRuntimeException;
 import io.github.notoday.netty.remoting.exception.RemotingSendRequestException;
 import io.github.notoday.netty.remoting.exception.RemotingTimeoutException;
+import io.github.notoday.netty.remoting.protocol.FragmentWriteHandler;
 import io.github.notoday.netty.remoting.protocol.NettyDecoder;
 import io.github.notoday.netty.remoting.protocol.NettyEncoder;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
@@ -17,24 +19,23 @@ import io.github.notoday.netty.remoting.security.NettyAuthenticatorHandler;
 import io.github.notoday.netty.remoting.security.RemotingSecurityUtils;
 import io.github.notoday.netty.remoting.ssl.OpenSslProvider;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.epoll.Epoll;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.stream.ChunkedInput;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author no-today
@@ -46,13 +47,25 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
     private final NettyServerConfig config;
 
     private final ServerBootstrap serverBootstrap;
+    private final NettyTransport transport;
     private final EventLoopGroup eventLoopGroupBoss;
     private final EventLoopGroup eventLoopGroupSelector;
     private final DefaultEventExecutorGroup defaultEventExecutorGroup;
 
     private final ExecutorService callbackExecutor;
 
-    private final Timer timer = new Timer("ServerHouseKeepingService", true);
+    private final Timer timeoutTimer;
+    private final AtomicBoolean timeoutTimerReleased = new AtomicBoolean();
+
+    /**
+     * 回调模式为 STRIPED / CHANNEL_STRIPED 时创建
+     */
+    private final CallbackStripes callbackStripes;
+
+    /**
+     * 虚拟线程模式下执行请求处理器, JDK 21 以下为 null
+     */
+    private final ExecutorService virtualThreadExecutor;
 
     private final ChannelEventListener channelEventListener;
 
@@ -60,45 +73,43 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
     private final ConcurrentHashMap<String, Channel> channelTable = new ConcurrentHashMap<>();
 
     // sharable handlers
-    private NettyDecoder protocDecoder;
     private NettyEncoder protocEncoder;
     private NettyAuthenticatorHandler nettyAuthenticatorHandler;
     private NettyServerConnectManageHandler nettyServerConnectManageHandler;
     private NettyServerHandler nettyServerHandler;
 
     public NettyRemotingServer(NettyServerConfig config, ChannelEventListener channelEventListener, Authenticator authenticator) {
-        super(config.getAsyncSemaphoreValue(), config.getOnewaySemaphoreValue());
+        super(config.getAsyncSemaphoreValue(), config.getOnewaySemaphoreValue(), config);
         this.config = config.clone();
         this.channelEventListener = channelEventListener;
         this.authenticator = authenticator;
 
         this.serverBootstrap = new ServerBootstrap();
         this.callbackExecutor = Executors.newFixedThreadPool(Math.max(4, config.getCallbackExecutorThreads()), RemotingUtil.newThreadFactory("NettyServerCallbackExecutor"));
-        this.defaultEventExecutorGroup = new DefaultEventExecutorGroup(config.getWorkerThreads(), RemotingUtil.newThreadFactory("NettyServerCodecThread"));
-
-        if (useEpoll()) {
-            log.debug("use epoll");
-            this.eventLoopGroupBoss = new EpollEventLoopGroup(1, RemotingUtil.newThreadFactory("NettyServerEpollBoss"));
-            this.eventLoopGroupSelector = new EpollEventLoopGroup(config.getSelectorThreads(), RemotingUtil.newThreadFactory("NettyServerEpollSelector"));
-        } else {
-            this.eventLoopGroupBoss = new NioEventLoopGroup(1, RemotingUtil.newThreadFactory("NettyServerNioBoss"));
-            this.eventLoopGroupSelector = new NioEventLoopGroup(config.getSelectorThreads(), RemotingUtil.newThreadFactory("NettyServerNioSelector"));
+        // 为 null 时 pipeline 中的处理器在 channel 的 EventLoop 中执行
+        this.defaultEventExecutorGroup = config.isCodecOnEventLoop() ? null : new DefaultEventExecutorGroup(config.getWorkerThreads(), RemotingUtil.newThreadFactory("NettyServerCodecThread"));
+
+        this.timeoutTimer = TimeoutTimers.acquire(this.config.getTimeoutTickMillis());
+        this.callbackStripes = config.getCallbackMode() == CallbackMode.STRIPED || config.getCallbackMode() == CallbackMode.CHANNEL_STRIPED
+                ? new CallbackStripes(config.getCallbackStripes(), "NettyServerCallbackStripe") : null;
+        this.virtualThreadExecutor = config.isVirtualThreads() ? RemotingUtil.newVirtualThreadPerTaskExecutor("NettyServerProcessorVirtualThread") : null;
+        if (config.isVirtualThreads() && this.virtualThreadExecutor == null) {
+            log.warn("virtual threads require JDK 21+, fallback to processor executors, java.version: {}", System.getProperty("java.version"));
         }
+        this.transport = NettyTransport.select(config.isUseIoUring(), true);
+        log.debug("use {}", this.transport);
+        this.eventLoopGroupBoss = this.transport.newEventLoopGroup(1, "NettyServer", "Boss");
+        this.eventLoopGroupSelector = this.transport.newEventLoopGroup(config.getSelectorThreads(), "NettyServer", "Selector");
     }
 
     public NettyRemotingServer(NettyServerConfig config) {
         this(config, null, null);
     }
 
-    private boolean useEpoll() {
-        return RemotingUtil.isLinuxPlatform() && Epoll.isAvailable();
-    }
-
     private void prepareSharableHandlers() {
-        this.protocDecoder = new NettyDecoder();
-        this.protocEncoder = new NettyEncoder();
+        this.protocEncoder = new NettyEncoder(this.compressorTable, this.config.getCompressionType(), this.config.getCompressionThreshold(), this.config.getFragmentSize());
 
-        this.nettyAuthenticatorHandler = new NettyAuthenticatorHandler(this.authenticator);
+        this.nettyAuthenticatorHandler = new NettyAuthenticatorHandler(this.authenticator, this.config.getHeaderTableSize(), this.config.isHeaderTableIndexValues());
         this.nettyServerConnectManageHandler = new NettyServerConnectManageHandler();
         this.nettyServerHandler = new NettyServerHandler();
     }
@@ -108,7 +119,7 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
         prepareSharableHandlers();
 
         ServerBootstrap handler = this.serverBootstrap.group(this.eventLoopGroupBoss, this.eventLoopGroupSelector)
-                .channel(useEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .channel(this.transport.serverChannelClass())
                 .option(ChannelOption.SO_BACKLOG, this.config.getSocketBacklog()).option(ChannelOption.SO_REUSEADDR, true)
                 .childOption(ChannelOption.TCP_NODELAY, true)
                 .localAddress(new InetSocketAddress(this.config.getListenPort()))
@@ -119,8 +130,15 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
                             ch.pipeline().addLast(OpenSslProvider.server().newHandler(ch.alloc()));
                         }
 
+                        if (NettyRemotingServer.this.config.getFlushMaxWrites() > 0) {
+                            ch.pipeline().addLast(new FlushCoalescingHandler(NettyRemotingServer.this.config.getFlushMaxWrites(), NettyRemotingServer.this.config.getFlushMaxBytes(), NettyRemotingServer.this.config.getFlushMaxDelayMicros()));
+                        }
+                        if (NettyRemotingServer.this.config.getFragmentSize() > 0) {
+                            ch.pipeline().addLast(NettyRemotingServer.this.defaultEventExecutorGroup, new FragmentWriteHandler());
+                        }
+
                         ch.pipeline().addLast(NettyRemotingServer.this.defaultEventExecutorGroup,
-                                NettyRemotingServer.this.protocDecoder,
+                                new NettyDecoder(NettyRemotingServer.this.serializerTable, NettyRemotingServer.this.compressorTable, NettyRemotingServer.this.config.getHeaderTableSize()),
                                 NettyRemotingServer.this.protocEncoder,
                                 new IdleStateHandler(0, 0, NettyRemotingServer.this.config.getChannelMaxIdleSeconds()),
                                 NettyRemotingServer.this.nettyAuthenticatorHandler,
@@ -151,27 +169,20 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
         } catch (InterruptedException e1) {
             throw new RemotingRuntimeException("this.serverBootstrap.bind().sync() InterruptedException", e1);
         }
-
-        this.timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    scanResponseTable();
-                } catch (Throwable e) {
-                    log.error("scanResponseTable exception", e);
-                }
-            }
-        }, 1000, 1000);
     }
 
     @Override
     public void shutdown() {
-        this.timer.cancel();
+        if (this.timeoutTimerReleased.compareAndSet(false, true)) {
+            TimeoutTimers.release(this.config.getTimeoutTickMillis());
+        }
 
         this.eventLoopGroupBoss.shutdownGracefully();
         this.eventLoopGroupSelector.shutdownGracefully();
-        this.defaultEventExecutorGroup.shutdownGracefully();
+        if (this.defaultEventExecutorGroup != null) this.defaultEventExecutorGroup.shutdownGracefully();
         this.callbackExecutor.shutdown();
+        if (this.virtualThreadExecutor != null) this.virtualThreadExecutor.shutdown();
+        if (this.callbackStripes != null) this.callbackStripes.shutdown();
     }
 
     @Override
@@ -179,6 +190,21 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
         return this.callbackExecutor;
     }
 
+    @Override
+    protected Timer getTimeoutTimer() {
+        return this.timeoutTimer;
+    }
+
+    @Override
+    CallbackStripes getCallbackStripes() {
+        return this.callbackStripes;
+    }
+
+    @Override
+    ExecutorService getVirtualThreadExecutor() {
+        return this.virtualThreadExecutor;
+    }
+
     @Override
     public RemotingCommand invokeSync(String login, RemotingCommand request, long timeoutMillis) throws InterruptedException, RemotingConnectException, RemotingSendRequestException, RemotingTimeoutException {
         return super.invokeSyncImpl(getChannel(login), request, timeoutMillis);
@@ -189,11 +215,26 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
         super.invokeAsyncImpl(getChannel(login), request, timeoutMillis, resultCallback);
     }
 
+    @Override
+    public CompletableFuture<RemotingCommand> invokeAsync(String login, RemotingCommand request, long timeoutMillis) {
+        return super.invokeFutureImpl(getChannel(login), request, timeoutMillis);
+    }
+
     @Override
     public void invokeOneway(String login, RemotingCommand request, long timeoutMillis, ResultCallback<Void> resultCallback) {
         super.invokeOnewayImpl(getChannel(login), request, timeoutMillis, resultCallback);
     }
 
+    @Override
+    public void invokeOnewayBatch(String login, List<RemotingCommand> requests, long timeoutMillis, ResultCallback<Void> resultCallback) {
+        super.invokeOnewayBatchImpl(getChannel(login), requests, timeoutMillis, resultCallback);
+    }
+
+    @Override
+    public void invokeStream(String login, RemotingCommand request, ChunkedInput<ByteBuf> input, long timeoutMillis, ResultCallback<RemotingCommand> resultCallback) {
+        super.invokeStreamImpl(getChannel(login), request, input, timeoutMillis, resultCallback);
+    }
+
     @Override
     public boolean isConnected(String login) {
         return this.channelTable.containsKey(login);
@@ -209,6 +250,13 @@ public class NettyRemotingServer extends NettyRemotingAbstract implements Remoti
         protected void channelRead0(ChannelHandlerContext ctx, RemotingCommand msg) throws Exception {
             processMessageReceived(ctx, msg);
         }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            closeInboundStreams(ctx.channel());
+            failPendingRequests(ctx.channel());
+            super.channelInactive(ctx);
+        }
     }
 
     @ChannelHandler.Sharable
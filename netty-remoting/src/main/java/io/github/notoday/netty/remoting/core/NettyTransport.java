@@ -0,0 +1,116 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.common.RemotingUtil;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 传输实现, 按 io_uring > epoll > NIO 的顺序选择当前环境可用的
+ *
+ * @author no-today
+ * @date 2023/10/20 10:20
+ */
+@Slf4j
+enum NettyTransport {
+
+    IO_URING("IOUring") {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads, String owner, String role) {
+            return new IOUringEventLoopGroup(threads, RemotingUtil.newThreadFactory(owner + this.displayName + role));
+        }
+
+        @Override
+        Class<? extends ServerSocketChannel> serverChannelClass() {
+            return IOUringServerSocketChannel.class;
+        }
+
+        @Override
+        Class<? extends SocketChannel> channelClass() {
+            return IOUringSocketChannel.class;
+        }
+    },
+
+    EPOLL("Epoll") {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads, String owner, String role) {
+            return new EpollEventLoopGroup(threads, RemotingUtil.newThreadFactory(owner + this.displayName + role));
+        }
+
+        @Override
+        Class<? extends ServerSocketChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        Class<? extends SocketChannel> channelClass() {
+            return EpollSocketChannel.class;
+        }
+    },
+
+    NIO("Nio") {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads, String owner, String role) {
+            return new NioEventLoopGroup(threads, RemotingUtil.newThreadFactory(owner + this.displayName + role));
+        }
+
+        @Override
+        Class<? extends ServerSocketChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        Class<? extends SocketChannel> channelClass() {
+            return NioSocketChannel.class;
+        }
+    };
+
+    /**
+     * 用于线程名, 例如 NettyServerEpollSelector
+     */
+    final String displayName;
+
+    NettyTransport(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * 线程名为 owner + 传输实现 + role
+     */
+    abstract EventLoopGroup newEventLoopGroup(int threads, String owner, String role);
+
+    abstract Class<? extends ServerSocketChannel> serverChannelClass();
+
+    abstract Class<? extends SocketChannel> channelClass();
+
+    /**
+     * io_uring 需要 5.9 以上的内核与对应平台的 native 包, 不可用时回退
+     *
+     * @param useIoUring 优先使用 io_uring
+     * @param useEpoll   允许使用 epoll
+     */
+    static NettyTransport select(boolean useIoUring, boolean useEpoll) {
+        if (useIoUring) {
+            if (RemotingUtil.isLinuxPlatform() && IOUring.isAvailable()) {
+                return IO_URING;
+            }
+            log.warn("io_uring not available, fallback to epoll or nio", IOUring.unavailabilityCause());
+        }
+        if (useEpoll && RemotingUtil.isLinuxPlatform() && Epoll.isAvailable()) {
+            return EPOLL;
+        }
+        return NIO;
+    }
+}
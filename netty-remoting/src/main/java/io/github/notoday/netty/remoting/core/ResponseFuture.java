@@ -1,31 +1,50 @@
 package io.github.notoday.netty.remoting.core;
 
 import io.github.notoday.netty.remoting.common.ErrorInfo;
+import io.github.notoday.netty.remoting.common.RemotingSystemCode;
 import io.github.notoday.netty.remoting.common.SemaphoreReleaseOnlyOnce;
+import io.github.notoday.netty.remoting.exception.RemotingException;
+import io.github.notoday.netty.remoting.exception.RemotingSendRequestException;
+import io.github.notoday.netty.remoting.exception.RemotingTimeoutException;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
 import io.netty.channel.Channel;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 与请求匹配, 在未来某个时间点通知
+ * <p>
+ * 作为任务提交给回调执行器: 执行回调后释放信号量, 这是异步调用信号量唯一的释放点
  *
  * @author no-today
  * @date 2022/05/29 15:03
  */
-public class ResponseFuture {
+@Slf4j
+public class ResponseFuture implements Runnable {
 
     private final Channel channel;
     private final int reqId;
     private final long timeoutMillis;
     private final long requestTimestamp = System.currentTimeMillis();
-    private final CountDownLatch countDownLatch = new CountDownLatch(1);
+    /**
+     * 单调时钟, 用于计算超时与 RTT, 不受系统时间调整影响
+     */
+    private final long requestNanos = System.nanoTime();
+    /**
+     * 只有同步调用阻塞等待, 有回调或 promise 的为 null
+     */
+    private final CountDownLatch countDownLatch;
     private final ResultCallback<RemotingCommand> responseCallback;
+    private final CompletableFuture<RemotingCommand> promise;
     private final AtomicBoolean executeResponseCallbackOnlyOnce = new AtomicBoolean(false);
     private final SemaphoreReleaseOnlyOnce semaphoreReleaseOnlyOnce;
-    private volatile long responseTimestamp;
+    private volatile long responseNanos;
+    private volatile Timeout timeout;
     private volatile RemotingCommand responseCommand;
     private volatile boolean sendRequestOk = true;
     private volatile Throwable cause;
@@ -35,17 +54,33 @@ public class ResponseFuture {
         this.reqId = reqId;
         this.timeoutMillis = timeoutMillis;
         this.responseCallback = responseCallback;
+        this.promise = null;
+        this.semaphoreReleaseOnlyOnce = semaphoreReleaseOnlyOnce;
+        this.countDownLatch = responseCallback == null ? new CountDownLatch(1) : null;
+    }
+
+    /**
+     * 结果交付给 promise, 而不是回调
+     */
+    public ResponseFuture(Channel channel, int reqId, long timeoutMillis, SemaphoreReleaseOnlyOnce semaphoreReleaseOnlyOnce, CompletableFuture<RemotingCommand> promise) {
+        this.channel = channel;
+        this.reqId = reqId;
+        this.timeoutMillis = timeoutMillis;
+        this.responseCallback = null;
+        this.promise = promise;
         this.semaphoreReleaseOnlyOnce = semaphoreReleaseOnlyOnce;
+        this.countDownLatch = null;
     }
 
     public ResponseFuture(Channel channel, int reqId, long timeoutMillis) {
-        this(channel, reqId, timeoutMillis, null, null);
+        this(channel, reqId, timeoutMillis, (ResultCallback<RemotingCommand>) null, null);
     }
 
     public void putResponse(final RemotingCommand responseCommand) {
-        this.responseTimestamp = System.currentTimeMillis();
+        cancelTimeout();
+        this.responseNanos = System.nanoTime();
         this.responseCommand = responseCommand;
-        this.countDownLatch.countDown(); // 通知前完成赋值
+        if (this.countDownLatch != null) this.countDownLatch.countDown(); // 通知前完成赋值
     }
 
     public RemotingCommand waitResponse(final long timeoutMillis) throws InterruptedException {
@@ -69,6 +104,25 @@ public class ResponseFuture {
         return requestTimestamp;
     }
 
+    /**
+     * 以 now(System.nanoTime) 计是否已经超时
+     */
+    public boolean isTimeout(long nowNanos) {
+        return nowNanos - this.requestNanos >= TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis);
+    }
+
+    /**
+     * 时间轮上的超时任务, 收到响应或失败时取消
+     */
+    public void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    public void cancelTimeout() {
+        Timeout timeout = this.timeout;
+        if (timeout != null) timeout.cancel();
+    }
+
     /**
      * RTT (RoundTripTime): 创建请求的时间 ~ 返回响应的时候
      * <p>
@@ -83,7 +137,7 @@ public class ResponseFuture {
      * @return -1 表示请求未发出或者没有响应
      */
     public long getRTT() {
-        return Math.max(-1, responseTimestamp - requestTimestamp);
+        return responseNanos == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(responseNanos - requestNanos);
     }
 
     public CountDownLatch getCountDownLatch() {
@@ -118,18 +172,79 @@ public class ResponseFuture {
         return responseCallback;
     }
 
+    /**
+     * 有回调或 promise 需要在响应后执行
+     */
+    public boolean hasCallback() {
+        return this.responseCallback != null || this.promise != null;
+    }
+
+    /**
+     * 响应的 bodyBuffer 只在回调期间有效, 回调结束后释放
+     */
     public void executeCallback() {
         if (this.executeResponseCallbackOnlyOnce.compareAndSet(false, true)) {
+            if (this.promise != null) {
+                completePromise();
+                return;
+            }
+
             if (this.responseCommand == null) {
-                this.responseCallback.onFailure(new ErrorInfo(this.reqId, -2, "timeout", this.cause));
+                if (this.sendRequestOk) {
+                    this.responseCallback.onFailure(new ErrorInfo(this.reqId, -2, "timeout", this.cause));
+                } else {
+                    // 发送失败或连接断开
+                    this.responseCallback.onFailure(new ErrorInfo(this.reqId, RemotingSystemCode.REQUEST_FAILED, this.cause == null ? null : this.cause.getMessage(), this.cause));
+                }
                 return;
             }
 
-            if (this.responseCommand.success()) {
-                this.responseCallback.onSuccess(this.responseCommand);
+            try {
+                if (this.responseCommand.success()) {
+                    this.responseCallback.onSuccess(this.responseCommand);
+                } else {
+                    this.responseCallback.onFailure(new ErrorInfo(this.reqId, this.responseCommand.getCode(), this.responseCommand.getMessage(), this.cause));
+                }
+            } finally {
+                this.responseCommand.release();
+            }
+        }
+    }
+
+    /**
+     * 收到响应即正常完成, 与同步调用一致由调用方判断响应码; 否则以同步调用会抛出的异常完成
+     */
+    private void completePromise() {
+        if (this.responseCommand == null) {
+            Throwable e;
+            if (this.sendRequestOk) {
+                e = new RemotingTimeoutException(this.timeoutMillis, this.cause);
+            } else if (this.cause instanceof RemotingException) {
+                e = this.cause;
             } else {
-                this.responseCallback.onFailure(new ErrorInfo(this.reqId, this.responseCommand.getCode(), this.responseCommand.getMessage(), this.cause));
+                e = new RemotingSendRequestException("failed to send request to channel", this.cause);
             }
+            this.promise.completeExceptionally(e);
+            return;
+        }
+
+        // 响应交由调用方持有, 转为堆内存后释放帧缓冲
+        this.responseCommand.getBody();
+        this.responseCommand.release();
+        this.promise.complete(this.responseCommand);
+    }
+
+    @Override
+    public void run() {
+        // promise 完成时依赖的阶段随即执行, 信号量需先于完成释放
+        if (this.promise != null) releaseSemaphore();
+
+        try {
+            executeCallback();
+        } catch (Throwable e) {
+            log.warn("execute callback exception, and callback throw", e);
+        } finally {
+            releaseSemaphore();
         }
     }
 
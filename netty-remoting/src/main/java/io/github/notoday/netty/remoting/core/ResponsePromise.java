@@ -0,0 +1,30 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步调用返回的 future, 取消时移除等待中的请求
+ *
+ * @author no-today
+ * @date 2023/10/22 10:20
+ */
+final class ResponsePromise extends CompletableFuture<RemotingCommand> {
+
+    private volatile Runnable onCancel;
+
+    void onCancel(Runnable onCancel) {
+        this.onCancel = onCancel;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Runnable onCancel = this.onCancel;
+        if (cancelled && onCancel != null) {
+            onCancel.run();
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.notoday.netty.remoting.core;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 等待响应的请求表, 以 reqId 为键; 每个连接一张, 连接断开时整表失败. 连接上的 reqId 也由它分配
+ * <p>
+ * 按 reqId 的哈希分段加锁, 每段是一张线性探测的开放寻址表(int[] 存键), 不装箱也没有节点对象; 删除时回移后续元素, 不留墓碑.
+ * 过期扫描直接遍历数组
+ *
+ * @author no-today
+ * @date 2023/10/21 14:10
+ */
+public final class ResponseTable {
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /**
+     * 已分配的最大 reqId, 回绕后从 1 重新开始
+     */
+    final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * 回绕之前分配的 reqId 不会重复, 不需要检查
+     */
+    private volatile boolean wrapped;
+
+    public ResponseTable() {
+        this(64, 64);
+    }
+
+    /**
+     * @param segments        段数, 向上取整到 2 的幂
+     * @param initialCapacity 每段的初始容量, 向上取整到 2 的幂
+     */
+    public ResponseTable(int segments, int initialCapacity) {
+        int n = powerOfTwo(Math.max(1, segments));
+        this.segments = new Segment[n];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(n);
+        for (int i = 0; i < n; i++) {
+            this.segments[i] = new Segment(powerOfTwo(Math.max(4, initialCapacity)));
+        }
+    }
+
+    /**
+     * 分配一个连接内唯一的 reqId: 从 1 递增到 Integer.MAX_VALUE 后回绕, 回绕后跳过仍在等待响应的
+     * <p>
+     * 流式调用的 reqId 在传输结束前一直在表中, 不会被复用
+     */
+    public int nextReqId() {
+        while (true) {
+            int reqId = this.sequence.incrementAndGet() & Integer.MAX_VALUE;
+            if (reqId == 0) {
+                this.wrapped = true;
+                continue;
+            }
+            if (!this.wrapped || !containsKey(reqId)) {
+                return reqId;
+            }
+        }
+    }
+
+    /**
+     * @return 之前的值
+     */
+    public ResponseFuture put(int reqId, ResponseFuture future) {
+        int h = hash(reqId);
+        return segment(h).put(reqId, h, future);
+    }
+
+    public ResponseFuture get(int reqId) {
+        int h = hash(reqId);
+        return segment(h).get(reqId, h);
+    }
+
+    public ResponseFuture remove(int reqId) {
+        int h = hash(reqId);
+        return segment(h).remove(reqId, h);
+    }
+
+    public boolean containsKey(int reqId) {
+        return get(reqId) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Segment segment : this.segments) {
+            if (segment.size() > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 只在当前值是 expected 时移除, 避免误删复用同一 reqId 的新请求
+     */
+    public boolean remove(int reqId, ResponseFuture expected) {
+        int h = hash(reqId);
+        return segment(h).remove(reqId, h, expected);
+    }
+
+    /**
+     * 移除已经超时的请求
+     *
+     * @param nowNanos System.nanoTime
+     * @param expired  收集被移除的请求
+     */
+    public void expire(long nowNanos, List<ResponseFuture> expired) {
+        for (Segment segment : this.segments) {
+            segment.expire(nowNanos, expired);
+        }
+    }
+
+    /**
+     * 移除全部请求
+     *
+     * @param removed 收集被移除的请求
+     */
+    public void clear(List<ResponseFuture> removed) {
+        for (Segment segment : this.segments) {
+            segment.clear(removed);
+        }
+    }
+
+    private Segment segment(int h) {
+        // 高位选段, 低位在段内寻址
+        return this.segmentShift == 32 ? this.segments[0] : this.segments[h >>> this.segmentShift];
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int powerOfTwo(int n) {
+        int p = Integer.highestOneBit(n);
+        return p == n ? n : p << 1;
+    }
+
+    private static final class Segment {
+
+        private int[] keys;
+        private ResponseFuture[] values;
+        private int size;
+
+        // 写在锁内, 读 size 时不加锁
+        private volatile int publishedSize;
+
+        Segment(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new ResponseFuture[capacity];
+        }
+
+        synchronized ResponseFuture put(int key, int h, ResponseFuture value) {
+            if ((this.size + 1) * 4 > this.values.length * 3) {
+                resize();
+            }
+
+            int mask = this.values.length - 1;
+            int i = h & mask;
+            while (this.values[i] != null) {
+                if (this.keys[i] == key) {
+                    ResponseFuture old = this.values[i];
+                    this.values[i] = value;
+                    return old;
+                }
+                i = (i + 1) & mask;
+            }
+
+            this.keys[i] = key;
+            this.values[i] = value;
+            this.publishedSize = ++this.size;
+            return null;
+        }
+
+        synchronized ResponseFuture get(int key, int h) {
+            int i = indexOf(key, h);
+            return i < 0 ? null : this.values[i];
+        }
+
+        synchronized ResponseFuture remove(int key, int h) {
+            int i = indexOf(key, h);
+            if (i < 0) return null;
+
+            ResponseFuture old = this.values[i];
+            delete(i);
+            return old;
+        }
+
+        synchronized boolean remove(int key, int h, ResponseFuture expected) {
+            int i = indexOf(key, h);
+            if (i < 0 || this.values[i] != expected) return false;
+
+            delete(i);
+            return true;
+        }
+
+        int size() {
+            return this.publishedSize;
+        }
+
+        synchronized void expire(long nowNanos, List<ResponseFuture> expired) {
+            if (this.size == 0) return;
+
+            int i = 0;
+            while (i < this.values.length) {
+                ResponseFuture future = this.values[i];
+                if (future != null && future.isTimeout(nowNanos)) {
+                    expired.add(future);
+                    // 后续元素可能回移到 i, 需要重新检查
+                    delete(i);
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        synchronized void clear(List<ResponseFuture> removed) {
+            for (int i = 0; i < this.values.length; i++) {
+                if (this.values[i] != null) {
+                    removed.add(this.values[i]);
+                    this.values[i] = null;
+                }
+            }
+            this.publishedSize = this.size = 0;
+        }
+
+        private int indexOf(int key, int h) {
+            int mask = this.values.length - 1;
+            int i = h & mask;
+            while (this.values[i] != null) {
+                if (this.keys[i] == key) return i;
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * 删除 i, 把探测链上后续的元素回移, 保证查找不会提前遇到空位
+         */
+        private void delete(int i) {
+            int mask = this.values.length - 1;
+            this.values[i] = null;
+            this.publishedSize = --this.size;
+
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (this.values[j] == null) return;
+
+                int k = hash(this.keys[j]) & mask;
+                // k 不在 (i, j] 之间, 说明 j 可以回移到 i
+                if (i <= j ? (i >= k || k > j) : (i >= k && k > j)) {
+                    this.keys[i] = this.keys[j];
+                    this.values[i] = this.values[j];
+                    this.values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private void resize() {
+            int[] oldKeys = this.keys;
+            ResponseFuture[] oldValues = this.values;
+
+            this.keys = new int[oldKeys.length << 1];
+            this.values = new ResponseFuture[oldValues.length << 1];
+            int mask = this.values.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] == null) continue;
+
+                int j = hash(oldKeys[i]) & mask;
+                while (this.values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                this.keys[j] = oldKeys[i];
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按连接串行的执行器, 同一连接提交到同一个线程池的任务按提交顺序逐个执行, 不同连接在共享的线程池中并行;
+ * 按 (连接, 线程池) 区分, 提交到不同线程池的任务之间不保证顺序
+ * <p>
+ * 类似 actor 的 mailbox: 任务先入队, 队列由空变为非空时向线程池提交一次消费; 每次最多连续执行 BATCH 个任务后重新提交, 避免繁忙的连接长期占用线程.
+ * 队列有上限, 超出或线程池拒绝时抛出 RejectedExecutionException 由调用方响应繁忙; 任务从不在提交线程(IO 线程)中执行
+ * <p>
+ * 同一连接的任务只由该连接的 pipeline 线程提交
+ *
+ * @author no-today
+ * @date 2023/10/20 16:40
+ */
+@Slf4j
+final class SerialExecutor implements Executor, Runnable {
+
+    private static final AttributeKey<ConcurrentMap<Executor, SerialExecutor>> SERIAL_EXECUTORS = AttributeKey.valueOf("_SerialExecutors");
+
+    private static final int BATCH = 64;
+
+    private final Executor delegate;
+    private final int capacity;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 排队中(还未开始执行)的任务数
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * 未执行完的任务数
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private SerialExecutor(Executor delegate, int capacity) {
+        this.delegate = delegate;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 连接在该线程池上的串行执行器, 随连接释放
+     *
+     * @param capacity 排队任务数上限
+     */
+    static SerialExecutor of(Channel channel, Executor delegate, int capacity) {
+        Attribute<ConcurrentMap<Executor, SerialExecutor>> attr = channel.attr(SERIAL_EXECUTORS);
+        ConcurrentMap<Executor, SerialExecutor> executors = attr.get();
+        if (executors == null) {
+            executors = new ConcurrentHashMap<>(4);
+            ConcurrentMap<Executor, SerialExecutor> older = attr.setIfAbsent(executors);
+            if (older != null) executors = older;
+        }
+        return executors.computeIfAbsent(delegate, key -> new SerialExecutor(key, capacity));
+    }
+
+    /**
+     * @throws RejectedExecutionException 队列已满或线程池拒绝时, 该任务不会执行
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (this.queued.get() >= this.capacity) {
+            throw new RejectedExecutionException("serial executor queue full, capacity: " + this.capacity);
+        }
+
+        this.queued.incrementAndGet();
+        this.tasks.offer(task);
+        if (this.wip.getAndIncrement() == 0) {
+            try {
+                this.delegate.execute(this);
+            } catch (RejectedExecutionException e) {
+                // 没有消费者在运行, 且只有当前线程提交, 队列中只有这个任务
+                this.tasks.remove(task);
+                this.queued.decrementAndGet();
+                this.wip.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        for (; ; ) {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable task = this.tasks.poll();
+                if (task != null) this.queued.decrementAndGet();
+                try {
+                    if (task != null) task.run();
+                } catch (Throwable e) {
+                    log.warn("serial task exception", e);
+                }
+                if (this.wip.decrementAndGet() == 0) return;
+            }
+
+            // 还有任务, 让出线程给其他连接; 线程池繁忙时继续在当前的线程池线程中执行
+            try {
+                this.delegate.execute(this);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.debug("serial executor busy, continue in current thread");
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.stream.ChunkedInput;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 发送中的流
+ * <p>
+ * 先发送头部, 之后只在持有对端授予的额度时从 ChunkedInput 读取并发送分片, 每个分片消耗一个额度;
+ * 状态只在 channel 的 EventLoop 中访问, 与 ChunkedWriteHandler 一样在 EventLoop 中读取输入
+ *
+ * @author no-today
+ * @date 2023/10/17 15:10
+ */
+@Slf4j
+public class StreamSender {
+
+    /**
+     * 输入暂时没有数据时的重试间隔
+     */
+    private static final long RETRY_DELAY_MILLIS = 1;
+
+    private final Channel channel;
+    private final RemotingCommand header;
+    private final ChunkedInput<ByteBuf> input;
+    private final Runnable onEnd;
+    private final Consumer<Throwable> onFailure;
+
+    /**
+     * 对端开放窗口前只能发送头部
+     */
+    private int credits = 1;
+    private boolean headerSent;
+    private boolean ended;
+
+    /**
+     * @param header    流的头部, 发送后由框架释放
+     * @param input     分片来源, 发送结束后关闭
+     * @param onEnd     最后一个分片已经写出
+     * @param onFailure 读取输入或写出失败
+     */
+    public StreamSender(Channel channel, RemotingCommand header, ChunkedInput<ByteBuf> input, Runnable onEnd, Consumer<Throwable> onFailure) {
+        this.channel = channel;
+        this.header = header;
+        this.input = input;
+        this.onEnd = onEnd;
+        this.onFailure = onFailure;
+    }
+
+    public void start() {
+        this.channel.eventLoop().execute(this::pump);
+    }
+
+    /**
+     * 对端授予额度
+     */
+    public void grant(int credits) {
+        this.channel.eventLoop().execute(() -> {
+            this.credits += credits;
+            pump();
+        });
+    }
+
+    /**
+     * 中止发送, 并告知对端
+     */
+    public void abort(String reason) {
+        this.channel.eventLoop().execute(() -> {
+            if (this.ended) return;
+            end();
+
+            if (this.channel.isActive()) {
+                this.channel.writeAndFlush(chunk(null).markStreamEndType().setMessage(reason));
+            }
+        });
+    }
+
+    private void pump() {
+        if (this.ended) return;
+
+        boolean written = false;
+        try {
+            while (this.credits > 0 && !this.ended) {
+                RemotingCommand command;
+                if (!this.headerSent) {
+                    this.headerSent = true;
+                    command = this.header.markStreamType();
+                } else {
+                    ByteBuf buf = this.input.readChunk(this.channel.alloc());
+                    boolean endOfInput = this.input.isEndOfInput();
+                    if (buf == null && !endOfInput) {
+                        this.channel.eventLoop().schedule(this::pump, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                        break;
+                    }
+
+                    command = chunk(buf);
+                    if (endOfInput) {
+                        command.markStreamEndType();
+                        end();
+                        this.onEnd.run();
+                    }
+                }
+
+                this.credits--;
+                this.channel.write(command).addListener(future -> {
+                    command.release();
+                    if (!future.isSuccess()) {
+                        fail(future.cause());
+                    }
+                });
+                written = true;
+            }
+        } catch (Throwable e) {
+            fail(e);
+        } finally {
+            if (written) this.channel.flush();
+        }
+    }
+
+    private RemotingCommand chunk(ByteBuf buf) {
+        RemotingCommand chunk = new RemotingCommand()
+                .setReqId(this.header.getReqId())
+                .setVersion(this.header.getVersion())
+                .setCode(this.header.getCode())
+                .markStreamType();
+        return buf == null ? chunk : chunk.setBodyBuffer(buf);
+    }
+
+    private void fail(Throwable cause) {
+        if (!this.ended) {
+            log.warn("send stream failed, reqId: {}", this.header.getReqId(), cause);
+            abort(cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage());
+        }
+        this.onFailure.accept(cause);
+    }
+
+    private void end() {
+        this.ended = true;
+        if (!this.headerSent) {
+            this.headerSent = true;
+            this.header.release();
+        }
+
+        try {
+            this.input.close();
+        } catch (Exception e) {
+            log.warn("close stream input exception", e);
+        }
+    }
+}
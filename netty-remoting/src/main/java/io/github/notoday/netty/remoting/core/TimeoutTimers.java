@@ -0,0 +1,56 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.common.RemotingUtil;
+import io.netty.util.HashedWheelTimer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求超时时间轮, 同一 JVM 中刻度相同的服务端与客户端共用一个
+ * <p>
+ * 每个时间轮占用一个线程, 且 Netty 在实例超过 64 个时告警; 超时回调只做移除与通知, 共用不会成为瓶颈.
+ * 引用计数管理生命周期, 最后一个使用者释放后停止
+ *
+ * @author no-today
+ * @date 2023/10/22 10:30
+ */
+final class TimeoutTimers {
+
+    /**
+     * 刻度(毫秒) -> 时间轮
+     */
+    private static final Map<Long, Entry> TIMERS = new HashMap<>();
+
+    private TimeoutTimers() {
+    }
+
+    /**
+     * 获取刻度对应的时间轮, 使用完后必须调用 {@link #release(long)}
+     */
+    static synchronized HashedWheelTimer acquire(long tickMillis) {
+        Entry entry = TIMERS.computeIfAbsent(tickMillis, key -> new Entry(new HashedWheelTimer(RemotingUtil.newThreadFactory("NettyRemotingTimeoutTimer"), key, TimeUnit.MILLISECONDS)));
+        entry.refCnt++;
+        return entry.timer;
+    }
+
+    static synchronized void release(long tickMillis) {
+        Entry entry = TIMERS.get(tickMillis);
+        if (entry == null) return;
+        if (--entry.refCnt == 0) {
+            TIMERS.remove(tickMillis);
+            entry.timer.stop();
+        }
+    }
+
+    private static final class Entry {
+
+        final HashedWheelTimer timer;
+        int refCnt;
+
+        Entry(HashedWheelTimer timer) {
+            this.timer = timer;
+        }
+    }
+}
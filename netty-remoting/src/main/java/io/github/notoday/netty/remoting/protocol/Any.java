@@ -1,6 +1,6 @@
 package io.github.notoday.netty.remoting.protocol;
 
-import com.alibaba.fastjson2.JSON;
+import io.github.notoday.netty.remoting.serializer.SerializerTable;
 
 /**
  * @author no-today
@@ -9,10 +9,10 @@ import com.alibaba.fastjson2.JSON;
 public class Any {
 
     public static byte[] pack(Object obj) {
-        return JSON.toJSONBytes(obj);
+        return SerializerTable.JSON.serialize(obj);
     }
 
     public static <T> T unpack(byte[] bytes, Class<T> clazz) {
-        return JSON.parseObject(bytes, clazz);
+        return SerializerTable.JSON.deserialize(bytes, clazz);
     }
 }
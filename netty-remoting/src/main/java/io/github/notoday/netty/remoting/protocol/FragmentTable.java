@@ -0,0 +1,93 @@
+package io.github.notoday.netty.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 接收中的分片指令, FragmentId -> 已收到的内容; 解码器每个连接一个实例, 只在解码线程访问
+ * <p>
+ * 分片数量与声明的 body 总长都有上限, 对端超出时抛出异常由连接管理处理器关闭连接, 避免大量只发首帧的分片占满内存
+ *
+ * @author no-today
+ * @date 2023/10/18 15:10
+ */
+final class FragmentTable {
+
+    private final int maxFragments;
+    private final long maxPendingBytes;
+
+    private final Map<Integer, Fragment> fragments = new HashMap<>();
+
+    /**
+     * 接收中的分片声明的 body 长度之和
+     */
+    private long pendingBytes;
+
+    /**
+     * @param maxFragments    同时接收中的分片数上限
+     * @param maxPendingBytes 接收中的分片声明的 body 总长上限
+     */
+    FragmentTable(int maxFragments, long maxPendingBytes) {
+        this.maxFragments = maxFragments;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    void add(int fragmentId, Fragment fragment) {
+        if (this.fragments.containsKey(fragmentId)) {
+            throw new CorruptedFrameException("duplicate fragment id: " + fragmentId);
+        }
+        if (this.fragments.size() >= this.maxFragments) {
+            throw new TooLongFrameException("pending fragments exceed " + this.maxFragments);
+        }
+        if (this.pendingBytes + fragment.bodyLength > this.maxPendingBytes) {
+            throw new TooLongFrameException("pending fragment bytes " + (this.pendingBytes + fragment.bodyLength) + " exceed " + this.maxPendingBytes);
+        }
+
+        this.fragments.put(fragmentId, fragment);
+        this.pendingBytes += fragment.bodyLength;
+    }
+
+    Fragment get(int fragmentId) {
+        return this.fragments.get(fragmentId);
+    }
+
+    Fragment remove(int fragmentId) {
+        Fragment fragment = this.fragments.remove(fragmentId);
+        if (fragment != null) this.pendingBytes -= fragment.bodyLength;
+        return fragment;
+    }
+
+    int size() {
+        return this.fragments.size();
+    }
+
+    void clear() {
+        for (Fragment fragment : this.fragments.values()) {
+            fragment.body.release();
+        }
+        this.fragments.clear();
+        this.pendingBytes = 0;
+    }
+
+    /**
+     * 接收中的分片指令, body 随内容到达逐步扩容, 容量上限为声明的长度
+     */
+    static final class Fragment {
+
+        final RemotingCommand command;
+        final byte flag;
+        final int bodyLength;
+        final ByteBuf body;
+
+        Fragment(RemotingCommand command, byte flag, int bodyLength, ByteBuf body) {
+            this.command = command;
+            this.flag = flag;
+            this.bodyLength = bodyLength;
+            this.body = body;
+        }
+    }
+}
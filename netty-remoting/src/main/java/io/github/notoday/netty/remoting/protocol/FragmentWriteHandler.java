@@ -0,0 +1,114 @@
+package io.github.notoday.netty.remoting.protocol;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * 分片调度
+ * <p>
+ * 完整的帧与分片的第一帧(携带头部)按编码顺序直接写出, 保证 HeaderTable 的插入与引用顺序不变;
+ * 分片的后续帧进入队列, 只在 channel 可写时按加权轮询写出, 每轮每个指令写出 weight 帧.
+ * 大指令因此不会占满出站缓冲, 之后的小指令最多排在一轮分片之后
+ * <p>
+ * 放在 NettyEncoder 之后(靠近 head), 与编码器在同一个线程中执行; 每个连接一个实例
+ *
+ * @author no-today
+ * @date 2023/10/18 10:35
+ */
+public class FragmentWriteHandler extends ChannelDuplexHandler {
+
+    private final Queue<Pending> queue = new ArrayDeque<>();
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof FragmentedBody) {
+            this.queue.offer(new Pending((FragmentedBody) msg, promise));
+        } else {
+            ctx.write(msg, promise);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        drain(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (drain(ctx)) {
+            ctx.flush();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discard(new ClosedChannelException());
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        discard(new ClosedChannelException());
+    }
+
+    /**
+     * @return 是否写出了分片
+     */
+    private boolean drain(ChannelHandlerContext ctx) {
+        boolean written = false;
+        while (ctx.channel().isWritable() && !this.queue.isEmpty()) {
+            Pending pending = this.queue.poll();
+            FragmentedBody body = pending.body;
+            for (int i = 0; i < body.weight() && body.isReadable(); i++) {
+                ChannelFuture future = ctx.write(body.next(ctx.alloc()));
+                future.addListener(f -> {
+                    if (!f.isSuccess()) {
+                        pending.promise.tryFailure(f.cause());
+                    }
+                });
+                written = true;
+
+                if (!body.isReadable()) {
+                    body.release();
+                    future.addListener(f -> {
+                        if (f.isSuccess()) {
+                            pending.promise.trySuccess();
+                        }
+                    });
+                }
+            }
+
+            if (body.isReadable()) {
+                this.queue.offer(pending);
+            }
+        }
+        return written;
+    }
+
+    private void discard(Throwable cause) {
+        Pending pending;
+        while ((pending = this.queue.poll()) != null) {
+            pending.body.release();
+            pending.promise.tryFailure(cause);
+        }
+    }
+
+    private static final class Pending {
+
+        private final FragmentedBody body;
+        private final ChannelPromise promise;
+
+        private Pending(FragmentedBody body, ChannelPromise promise) {
+            this.body = body;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.notoday.netty.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.AbstractReferenceCounted;
+
+/**
+ * 分片指令第一帧之后剩余的 body, 由 NettyEncoder 产生, 交给 FragmentWriteHandler 逐帧写出
+ *
+ * @author no-today
+ * @date 2023/10/18 10:20
+ */
+final class FragmentedBody extends AbstractReferenceCounted {
+
+    private final byte version;
+    private final int fragmentId;
+    private final ByteBuf body;
+    private final int maxLength;
+    private final int weight;
+
+    /**
+     * @param body      所有权交给该对象
+     * @param maxLength 每帧携带的 body 长度上限
+     * @param weight    每轮调度写出的帧数
+     */
+    FragmentedBody(byte version, int fragmentId, ByteBuf body, int maxLength, int weight) {
+        this.version = version;
+        this.fragmentId = fragmentId;
+        this.body = body;
+        this.maxLength = maxLength;
+        this.weight = Math.max(1, weight);
+    }
+
+    boolean isReadable() {
+        return this.body.isReadable();
+    }
+
+    int weight() {
+        return this.weight;
+    }
+
+    /**
+     * 切出下一帧, body 以 retained slice 承载, 不拷贝
+     */
+    ByteBuf next(ByteBufAllocator alloc) {
+        int length = Math.min(this.maxLength, this.body.readableBytes());
+        ByteBuf header = alloc.ioBuffer(RemotingCommandCodec.FRAGMENT_HEADER_LENGTH);
+        RemotingCommandCodec.encodeFragmentHeader(header, this.version, this.fragmentId, length);
+        return alloc.compositeBuffer(2).addComponents(true, header, this.body.readRetainedSlice(length));
+    }
+
+    @Override
+    protected void deallocate() {
+        this.body.release();
+    }
+
+    @Override
+    public FragmentedBody touch(Object hint) {
+        this.body.touch(hint);
+        return this;
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.notoday.netty.remoting.protocol;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.AttributeKey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 连接级别的 extFields 字典, 类似 HPACK 的动态表
+ * <p>
+ * 首次出现的字符串按字面量写出并由发送方指定槽位插入, 之后只写槽位下标; 发送方按环形覆盖旧槽位, 接收方只按收到的槽位存取
+ * <p>
+ * 每个方向各自一张表: 接收方在认证时告知自己的容量, 发送方使用不超过该容量的槽位
+ *
+ * @author no-today
+ * @date 2023/10/16 10:05
+ */
+public final class HeaderTable {
+
+    /**
+     * 认证请求与响应中告知对端自己的字典容量
+     */
+    public static final String HEADER_TABLE_SIZE = "headerTableSize";
+
+    /**
+     * 槽位下标以 2 byte 无符号数写出
+     */
+    public static final int MAX_CAPACITY = 0xFFFF;
+
+    /**
+     * 超过该长度的字符串不入表, 避免一次性的长值(例如 traceId)挤掉常用项
+     */
+    static final int MAX_ENTRY_LENGTH = 128;
+
+    private static final AttributeKey<HeaderTable> ENCODER_TABLE = AttributeKey.valueOf("_HeaderTable");
+
+    private final String[] entries;
+
+    /**
+     * 只有发送方使用, 字符串 -> 槽位
+     */
+    private final Map<String, Integer> indexes;
+    private final boolean indexValues;
+    private int next;
+
+    private HeaderTable(int capacity, boolean encoder, boolean indexValues) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("header table capacity must be in [1, " + MAX_CAPACITY + "], but was " + capacity);
+        }
+        this.entries = new String[capacity];
+        this.indexes = encoder ? new HashMap<>(capacity * 2) : null;
+        this.indexValues = indexValues;
+    }
+
+    /**
+     * 发送方字典
+     *
+     * @param capacity    不超过对端告知的容量
+     * @param indexValues 是否同时对 value 建立索引, 否则只索引 key
+     */
+    static HeaderTable encoder(int capacity, boolean indexValues) {
+        return new HeaderTable(capacity, true, indexValues);
+    }
+
+    /**
+     * 接收方字典
+     *
+     * @param capacity 本端告知对端的容量
+     */
+    static HeaderTable decoder(int capacity) {
+        return new HeaderTable(capacity, false, false);
+    }
+
+    /**
+     * 认证完成后启用出站方向的字典, 之后写出的指令按字典编码 extFields
+     *
+     * @param capacity    不超过对端告知的容量, 小于等于 0 表示不启用
+     * @param indexValues 是否同时对 value 建立索引
+     */
+    public static void enable(Channel channel, int capacity, boolean indexValues) {
+        if (capacity <= 0) return;
+        channel.attr(ENCODER_TABLE).set(encoder(Math.min(capacity, MAX_CAPACITY), indexValues));
+    }
+
+    static HeaderTable get(Channel channel) {
+        return channel.attr(ENCODER_TABLE).get();
+    }
+
+    boolean isIndexValues() {
+        return this.indexValues;
+    }
+
+    /**
+     * @return 槽位下标, 不在表中时返回 -1
+     */
+    int indexOf(String value) {
+        Integer index = this.indexes.get(value);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 是否值得入表
+     */
+    boolean indexable(String value) {
+        return value.length() <= MAX_ENTRY_LENGTH;
+    }
+
+    /**
+     * 占用下一个槽位, 覆盖其中的旧字符串
+     *
+     * @return 槽位下标
+     */
+    int insert(String value) {
+        int index = this.next;
+        String evicted = this.entries[index];
+        if (evicted != null) this.indexes.remove(evicted);
+
+        this.entries[index] = value;
+        this.indexes.put(value, index);
+        this.next = (index + 1) % this.entries.length;
+        return index;
+    }
+
+    void set(int index, String value) {
+        checkIndex(index);
+        this.entries[index] = value;
+    }
+
+    String get(int index) {
+        checkIndex(index);
+        String value = this.entries[index];
+        if (value == null) {
+            throw new CorruptedFrameException("header table index " + index + " is empty");
+        }
+        return value;
+    }
+
+    private void checkIndex(int index) {
+        if (index >= this.entries.length) {
+            throw new CorruptedFrameException("header table index " + index + " out of capacity " + this.entries.length);
+        }
+    }
+}
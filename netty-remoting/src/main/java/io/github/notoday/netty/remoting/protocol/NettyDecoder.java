@@ -1,7 +1,8 @@
 package io.github.notoday.netty.remoting.protocol;
 
-import com.alibaba.fastjson2.JSON;
+import io.github.notoday.netty.remoting.compression.CompressorTable;
 import io.github.notoday.netty.remoting.config.NettySystemConfig;
+import io.github.notoday.netty.remoting.serializer.SerializerTable;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
@@ -29,12 +30,50 @@ import static io.github.notoday.netty.remoting.protocol.RemotingCommand.MAGIC_NU
 @Slf4j
 public class NettyDecoder extends LengthFieldBasedFrameDecoder {
 
-    public NettyDecoder() {
+    private final SerializerTable serializerTable;
+    private final CompressorTable compressorTable;
+
+    /**
+     * 入站方向的 extFields 字典, 未启用时为 null
+     */
+    private final HeaderTable headerTable;
+
+    /**
+     * 接收中的分片指令
+     */
+    private final FragmentTable fragments;
+
+    /**
+     * @param headerTableSize 本端告知对端的字典容量, 小于等于 0 表示不启用
+     */
+    public NettyDecoder(SerializerTable serializerTable, CompressorTable compressorTable, int headerTableSize) {
+        this(serializerTable, compressorTable, headerTableSize, NettySystemConfig.fragmentMaxPending, NettySystemConfig.fragmentMaxPendingBytes);
+    }
+
+    /**
+     * @param maxFragments    同时接收中的分片数上限
+     * @param maxPendingBytes 接收中的分片声明的 body 总长上限
+     */
+    NettyDecoder(SerializerTable serializerTable, CompressorTable compressorTable, int headerTableSize, int maxFragments, long maxPendingBytes) {
         /*
          * |    4 byte   | 4 byte |  N byte |
          * | MagicNumber | Length | Content |
+         *
+         * Content 格式见 RemotingCommandCodec
          */
         super(NettySystemConfig.frameMaxLength, 4, 4, 0, 0);
+        this.serializerTable = serializerTable;
+        this.compressorTable = compressorTable;
+        this.headerTable = headerTableSize > 0 ? HeaderTable.decoder(headerTableSize) : null;
+        this.fragments = new FragmentTable(maxFragments, maxPendingBytes);
+    }
+
+    public NettyDecoder(SerializerTable serializerTable, CompressorTable compressorTable) {
+        this(serializerTable, compressorTable, 0);
+    }
+
+    public NettyDecoder() {
+        this(SerializerTable.DEFAULT, CompressorTable.DEFAULT);
     }
 
     @Override
@@ -52,12 +91,17 @@ public class NettyDecoder extends LengthFieldBasedFrameDecoder {
             return null;
         }
 
-        // skip magic number
-        frame.skipBytes(4);
-
-        byte[] bytes = new byte[frame.readInt()];
-        frame.readBytes(bytes);
+        try {
+            // skip magic number & length
+            frame.skipBytes(8);
+            return RemotingCommandCodec.decode(frame, this.serializerTable, this.compressorTable, this.headerTable, ctx.alloc(), this.fragments);
+        } finally {
+            frame.release();
+        }
+    }
 
-        return JSON.parseObject(bytes, RemotingCommand.class);
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        this.fragments.clear();
     }
 }
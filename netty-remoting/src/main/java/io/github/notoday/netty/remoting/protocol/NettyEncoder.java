@@ -1,19 +1,202 @@
 package io.github.notoday.netty.remoting.protocol;
 
+import io.github.notoday.netty.remoting.compression.Compressor;
+import io.github.notoday.netty.remoting.compression.CompressorTable;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * body 由 ByteBuf 承载时, 头部与 body 组合为 CompositeByteBuf 写出, 不拷贝 body
+ * <p>
+ * body 达到压缩阈值时压缩后写出, 压缩后没有变小则原样写出
+ * <p>
+ * 缓冲按帧的准确长度一次分配, 编码过程不扩容也不产生中间对象
+ * <p>
+ * 连接启用 HeaderTable 后 extFields 按字典编码
+ * <p>
+ * 帧超过分片大小时拆分: 第一帧(完整头部 + body 的开头)照常写出, 其余 body 交给 FragmentWriteHandler 与其他指令交错写出
+ *
  * @author no-today
  * @date 2023/09/21 17:17
  */
 @ChannelHandler.Sharable
-public class NettyEncoder extends MessageToByteEncoder<RemotingCommand> {
+public class NettyEncoder extends MessageToMessageEncoder<RemotingCommand> {
+
+    /**
+     * 分片大小的下限, 保证第一帧放得下常规的头部
+     */
+    public static final int MIN_FRAGMENT_SIZE = 4096;
+
+    private static final AttributeKey<AtomicInteger> FRAGMENT_ID = AttributeKey.valueOf("_FragmentId");
+
+    private final Compressor compressor;
+    private final int compressionThreshold;
+    private final int fragmentSize;
+
+    /**
+     * @param compressorTable      压缩算法表
+     * @param compressionType      压缩算法编号
+     * @param compressionThreshold body 达到该字节数才压缩, 小于等于 0 表示不压缩
+     * @param fragmentSize         帧超过该字节数时拆分, 小于等于 0 表示不拆分; 拆分时 pipeline 中需要有 FragmentWriteHandler
+     */
+    public NettyEncoder(CompressorTable compressorTable, byte compressionType, int compressionThreshold, int fragmentSize) {
+        if (fragmentSize > 0 && fragmentSize < MIN_FRAGMENT_SIZE) {
+            throw new IllegalArgumentException("fragment size must be at least " + MIN_FRAGMENT_SIZE + ", but was " + fragmentSize);
+        }
+        if (compressionThreshold > 0) {
+            this.compressor = compressorTable.get(compressionType);
+            if (this.compressor == null) {
+                throw new IllegalArgumentException("compressor not registered, id: " + compressionType);
+            }
+        } else {
+            this.compressor = null;
+        }
+        this.compressionThreshold = compressionThreshold;
+        this.fragmentSize = fragmentSize;
+    }
+
+    public NettyEncoder(CompressorTable compressorTable, byte compressionType, int compressionThreshold) {
+        this(compressorTable, compressionType, compressionThreshold, 0);
+    }
+
+    public NettyEncoder() {
+        this(CompressorTable.DEFAULT, (byte) 0, 0);
+    }
 
     @Override
-    protected void encode(ChannelHandlerContext channelHandlerContext, RemotingCommand command, ByteBuf out) throws Exception {
-        command.encode(out);
+    protected void encode(ChannelHandlerContext ctx, RemotingCommand command, List<Object> out) throws Exception {
+        HeaderTable headerTable = HeaderTable.get(ctx.channel());
+        int headerLength = RemotingCommandCodec.headerLength(command, headerTable);
+
+        ByteBuf compressed = null;
+        if (this.compressor != null && command.getBodyLength() >= this.compressionThreshold) {
+            compressed = compress(ctx, command);
+        }
+
+        int bodyLength = compressed != null ? RemotingCommandCodec.COMPRESSED_PREFIX_LENGTH + compressed.readableBytes() : command.getBodyLength();
+        if (this.fragmentSize > 0 && bodyLength > 0 && headerLength + bodyLength > this.fragmentSize) {
+            fragment(ctx, command, headerTable, headerLength, compressed, out);
+            return;
+        }
+
+        if (compressed != null) {
+            ByteBuf header = ctx.alloc().ioBuffer(headerLength + RemotingCommandCodec.COMPRESSED_PREFIX_LENGTH);
+            try {
+                RemotingCommandCodec.encodeCompressedHeader(command, header, headerTable, this.compressor.getId(), compressed.readableBytes());
+            } catch (Throwable e) {
+                header.release();
+                compressed.release();
+                throw e;
+            }
+
+            out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, compressed));
+            return;
+        }
+
+        ByteBuf bodyBuffer = command.getBodyBuffer();
+        if (bodyBuffer == null) {
+            ByteBuf buf = ctx.alloc().ioBuffer(headerLength + Math.max(0, command.getBodyLength()));
+            try {
+                RemotingCommandCodec.encode(command, buf, headerTable);
+            } catch (Throwable e) {
+                buf.release();
+                throw e;
+            }
+            out.add(buf);
+            return;
+        }
+
+        ByteBuf header = ctx.alloc().ioBuffer(headerLength);
+        try {
+            RemotingCommandCodec.encodeHeader(command, header, headerTable);
+        } catch (Throwable e) {
+            header.release();
+            throw e;
+        }
+
+        // 指令自身的引用计数在写出完成后由框架释放, 这里为出站缓冲另外持有一份
+        out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, bodyBuffer.retainedDuplicate()));
+    }
+
+    /**
+     * 第一帧携带完整头部与 body 的开头, 其余 body 由 FragmentWriteHandler 逐帧写出
+     */
+    private void fragment(ChannelHandlerContext ctx, RemotingCommand command, HeaderTable headerTable, int headerLength, ByteBuf compressed, List<Object> out) {
+        ByteBuf body;
+        byte flag;
+        if (compressed != null) {
+            ByteBuf prefix = ctx.alloc().ioBuffer(RemotingCommandCodec.COMPRESSED_PREFIX_LENGTH);
+            RemotingCommandCodec.writeCompressedPrefix(prefix, this.compressor.getId(), command.getBodyLength());
+            body = ctx.alloc().compositeBuffer(2).addComponents(true, prefix, compressed);
+            flag = RemotingCommandCodec.FLAG_COMPRESSED;
+        } else {
+            ByteBuf bodyBuffer = command.getBodyBuffer();
+            body = bodyBuffer != null ? bodyBuffer.retainedDuplicate() : Unpooled.wrappedBuffer(command.getBody());
+            flag = 0;
+        }
+
+        int fragmentId = nextFragmentId(ctx.channel());
+        int firstLength = Math.max(0, Math.min(body.readableBytes(), this.fragmentSize - headerLength - 4));
+
+        ByteBuf header = ctx.alloc().ioBuffer(headerLength + 4);
+        try {
+            RemotingCommandCodec.encodeFragmentedHeader(command, header, headerTable, flag, body.readableBytes(), fragmentId, firstLength);
+        } catch (Throwable e) {
+            header.release();
+            body.release();
+            throw e;
+        }
+
+        out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, body.readRetainedSlice(firstLength)));
+        if (body.isReadable()) {
+            out.add(new FragmentedBody(command.getVersion(), fragmentId, body, this.fragmentSize - RemotingCommandCodec.FRAGMENT_HEADER_LENGTH, command.getFragmentWeight()));
+        } else {
+            body.release();
+        }
+    }
+
+    /**
+     * 连接内唯一即可, 与 reqId 无关(两个方向的 reqId 可能相同)
+     */
+    private static int nextFragmentId(Channel channel) {
+        Attribute<AtomicInteger> attr = channel.attr(FRAGMENT_ID);
+        AtomicInteger fragmentId = attr.get();
+        if (fragmentId == null) {
+            fragmentId = new AtomicInteger();
+            attr.set(fragmentId);
+        }
+        return fragmentId.getAndIncrement();
+    }
+
+    /**
+     * @return 压缩后没有变小时返回 null
+     */
+    private ByteBuf compress(ChannelHandlerContext ctx, RemotingCommand command) throws Exception {
+        int bodyLength = command.getBodyLength();
+        ByteBuf bodyBuffer = command.getBodyBuffer();
+        ByteBuf in = bodyBuffer != null ? bodyBuffer.duplicate() : Unpooled.wrappedBuffer(command.getBody());
+
+        ByteBuf compressed = ctx.alloc().ioBuffer(bodyLength >> 1);
+        try {
+            this.compressor.compress(in, compressed);
+        } catch (Throwable e) {
+            compressed.release();
+            throw e;
+        }
+
+        if (compressed.readableBytes() + RemotingCommandCodec.COMPRESSED_PREFIX_LENGTH >= bodyLength) {
+            compressed.release();
+            return null;
+        }
+        return compressed;
     }
 }
@@ -1,18 +1,29 @@
 package io.github.notoday.netty.remoting.protocol;
 
-import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.annotation.JSONField;
 import io.github.notoday.netty.remoting.common.RemotingSystemCode;
+import io.github.notoday.netty.remoting.config.NettySystemConfig;
+import io.github.notoday.netty.remoting.exception.RemotingRuntimeException;
+import io.github.notoday.netty.remoting.serializer.JsonSerializer;
+import io.github.notoday.netty.remoting.serializer.Serializer;
+import io.github.notoday.netty.remoting.serializer.SerializerTable;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 
 import java.io.Serializable;
-import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author no-today
@@ -24,11 +35,15 @@ public class RemotingCommand implements Serializable {
     private static final long serialVersionUID = 2637522862988253773L;
 
     static final int MAGIC_NUMBER = 0x951AEFC8;
-    private static final AtomicInteger requestId = new AtomicInteger();
 
     private final static byte REQUEST = 0x00;
     private final static byte RESPONSE = 0x01;
     private final static byte ONEWAY = 0x02;
+    private final static byte BATCH = 0x03;
+    private final static byte STREAM = 0x04;
+    private final static byte STREAM_END = 0x05;
+    private final static byte CREDIT = 0x06;
+    // 0x07 为分片的后续帧, 只在编解码器内部出现, 见 RemotingCommandCodec
 
     /**
      * 协议版本号
@@ -36,7 +51,7 @@ public class RemotingCommand implements Serializable {
     private byte version;
 
     /**
-     * 请求ID, 用于串联应答
+     * 请求ID, 用于串联应答; 请求的 reqId 在发送时由连接分配, 只在连接内唯一
      */
     private int reqId;
 
@@ -45,6 +60,11 @@ public class RemotingCommand implements Serializable {
      */
     private int type;
 
+    /**
+     * body 的序列化器编号, 默认 JSON
+     */
+    private byte serializerId = JsonSerializer.ID;
+
     /**
      * 指令编码 or 响应编码
      */
@@ -62,6 +82,41 @@ public class RemotingCommand implements Serializable {
      */
     private byte[] body;
 
+    /**
+     * 以 ByteBuf 承载的二进制内容, 与 body 二选一
+     * <p>
+     * 入站: 指向帧缓冲的 retained slice, 避免解码时拷贝; 由框架在处理器/回调结束后释放
+     * 出站: 调用方提供的 ByteBuf/CompositeByteBuf, 编码时直接写出不拷贝, 所有权交给框架, 写出完成后释放
+     * <p>
+     * 需要在回调结束后继续持有时, 自行 retain 或调用 getBody 转为堆内存
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient ByteBuf bodyBuffer;
+
+    /**
+     * 解码时绑定所属端注册的序列化器表, 用于解析自定义的序列化器编号
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient SerializerTable serializerTable;
+
+    /**
+     * 拆分为分片写出时的调度权重, 每轮写出的分片数; 只影响本端写出, 不传输
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient int fragmentWeight = 1;
+
+    /**
+     * unpack 的结果及其类型, 放在同一个不可变对象中整体替换, 并发 unpack 不同类型时不会错配; body 或序列化器变化时清除
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient volatile Unpacked unpacked;
+
     /**
      * 扩展字段, 用于透传额外的信息, 例如 traceId
      */
@@ -77,6 +132,22 @@ public class RemotingCommand implements Serializable {
         return this;
     }
 
+    /**
+     * 流式传输的分片, 同一个流的分片共用请求的 reqId; 第一个分片是流的头部(code/extFields/body 作为元信息)
+     */
+    public RemotingCommand markStreamType() {
+        this.type = STREAM;
+        return this;
+    }
+
+    /**
+     * 流的最后一个分片, message 不为空表示发送方中止
+     */
+    public RemotingCommand markStreamEndType() {
+        this.type = STREAM_END;
+        return this;
+    }
+
     @JSONField(serialize = false)
     public boolean isResponse() {
         return RESPONSE == type;
@@ -87,6 +158,35 @@ public class RemotingCommand implements Serializable {
         return ONEWAY == type;
     }
 
+    /**
+     * 批量指令, body 由多条子指令组成
+     */
+    @JSONField(serialize = false)
+    public boolean isBatch() {
+        return BATCH == type;
+    }
+
+    /**
+     * 流的分片, 包括最后一个分片
+     */
+    @JSONField(serialize = false)
+    public boolean isStream() {
+        return STREAM == type || STREAM_END == type;
+    }
+
+    @JSONField(serialize = false)
+    public boolean isStreamEnd() {
+        return STREAM_END == type;
+    }
+
+    /**
+     * 流控授权, code 为授予的分片数
+     */
+    @JSONField(serialize = false)
+    public boolean isCredit() {
+        return CREDIT == type;
+    }
+
     @JSONField(serialize = false)
     public boolean success() {
         if (!isResponse()) return false;
@@ -106,25 +206,197 @@ public class RemotingCommand implements Serializable {
         return this;
     }
 
+    /**
+     * 优先返回堆内存 body, 若内容由 bodyBuffer 承载则拷贝一份并缓存
+     */
+    public byte[] getBody() {
+        if (this.body == null && this.bodyBuffer != null) {
+            this.body = ByteBufUtil.getBytes(this.bodyBuffer);
+        }
+        return this.body;
+    }
+
+    public RemotingCommand setBody(byte[] body) {
+        release();
+        this.body = body;
+        this.unpacked = null;
+        return this;
+    }
+
+    @JSONField(serialize = false)
+    public ByteBuf getBodyBuffer() {
+        return this.bodyBuffer;
+    }
+
+    /**
+     * 以 ByteBuf 作为 body, 当前指令获得该 ByteBuf 的一个引用计数
+     */
+    public RemotingCommand setBodyBuffer(ByteBuf bodyBuffer) {
+        if (this.bodyBuffer != bodyBuffer) release();
+        this.body = null;
+        this.bodyBuffer = bodyBuffer;
+        this.unpacked = null;
+        return this;
+    }
+
+    public RemotingCommand setSerializerId(byte serializerId) {
+        this.serializerId = serializerId;
+        this.unpacked = null;
+        return this;
+    }
+
+    public RemotingCommand setSerializerTable(SerializerTable serializerTable) {
+        this.serializerTable = serializerTable;
+        this.unpacked = null;
+        return this;
+    }
+
+    @JSONField(serialize = false)
+    public int getFragmentWeight() {
+        return this.fragmentWeight;
+    }
+
+    /**
+     * body 字节数, 没有 body 时为 -1
+     */
+    @JSONField(serialize = false)
+    public int getBodyLength() {
+        if (this.body != null) return this.body.length;
+        if (this.bodyBuffer != null) return this.bodyBuffer.readableBytes();
+        return -1;
+    }
+
+    /**
+     * 释放 bodyBuffer, 已经通过 getBody 转为堆内存的内容不受影响
+     *
+     * @return 底层缓冲是否被回收
+     */
+    public boolean release() {
+        ByteBuf buffer = this.bodyBuffer;
+        if (buffer == null) return false;
+
+        this.bodyBuffer = null;
+        return buffer.release();
+    }
+
     // ------------------------------------------------------------
 
     public void encode(ByteBuf out) {
-        out.writeInt(MAGIC_NUMBER);
+        RemotingCommandCodec.encode(this, out);
+    }
+
+    /**
+     * 按 serializerId 解析出的序列化器, 响应可以沿用请求的序列化器
+     */
+    @JSONField(serialize = false)
+    public Serializer getSerializer() {
+        SerializerTable table = this.serializerTable != null ? this.serializerTable : SerializerTable.DEFAULT;
+        Serializer serializer = table.get(this.serializerId);
+        if (serializer == null) {
+            throw new RemotingRuntimeException("serializer not registered, id: " + this.serializerId);
+        }
+        return serializer;
+    }
 
-        byte[] bytes = JSON.toJSONString(this).getBytes(Charset.defaultCharset());
+    public RemotingCommand pack(Serializer serializer, Object obj) {
+        setSerializerId(serializer.getId());
+        return setBody(serializer.serialize(obj));
+    }
 
-        out.writeInt(bytes.length);
-        out.writeBytes(bytes);
+    /**
+     * 使用当前 serializerId 对应的序列化器
+     */
+    public RemotingCommand pack(Object obj) {
+        return setBody(getSerializer().serialize(obj));
     }
 
+    /**
+     * 首次调用时解析 body, 之后同一类型直接返回缓存的结果, 钩子与处理器多次 unpack 不会重复解析
+     * <p>
+     * 返回的对象被缓存共享, 不要修改; 需要修改时先拷贝
+     */
+    @SuppressWarnings("unchecked")
     public <T> T unpack(Class<T> clazz) {
-        return JSON.parseObject(new String(body), clazz);
+        Unpacked unpacked = this.unpacked;
+        if (unpacked != null && unpacked.type == clazz) {
+            return (T) unpacked.value;
+        }
+
+        T value = getSerializer().deserialize(getBody(), clazz);
+        this.unpacked = new Unpacked(clazz, value);
+        return value;
+    }
+
+    /**
+     * 适合钩子与链路追踪的摘要, 只输出 body 的长度, 不渲染 body 内容
+     */
+    public String summary() {
+        return "RemotingCommand(reqId=" + this.reqId + ", type=" + this.type + ", code=" + this.code
+                + ", serializerId=" + this.serializerId + ", message=" + this.message
+                + ", extFields=" + this.extFields + ", bodyLength=" + getBodyLength() + ")";
+    }
+
+    /**
+     * 拆出批量指令中的子指令, 子指令的 bodyBuffer 各自持有引用计数, 当前指令仍需自行释放
+     */
+    public List<RemotingCommand> unbatch() {
+        if (!isBatch()) {
+            throw new RemotingRuntimeException("not a batch command, type: " + this.type);
+        }
+
+        ByteBuf batch = this.bodyBuffer != null ? this.bodyBuffer.duplicate() : Unpooled.wrappedBuffer(getBody());
+        try {
+            return RemotingCommandCodec.decodeBatch(batch, this.serializerTable);
+        } catch (Exception e) {
+            throw new RemotingRuntimeException("malformed batch command", e);
+        }
     }
 
     // ------------------------------------------------------------
 
+    /**
+     * 将多条指令编码进一条批量指令, 共用一个帧头与一次写出
+     * <p>
+     * 编码完成后子指令即被释放
+     *
+     * @param alloc    批量 body 的缓冲分配器
+     * @param commands 子指令
+     */
+    public static RemotingCommand batch(ByteBufAllocator alloc, List<RemotingCommand> commands) {
+        int length = RemotingCommandCodec.batchLength(commands);
+        if (length > NettySystemConfig.frameMaxLength) {
+            throw new RemotingRuntimeException("batch length " + length + " exceeds " + NettySystemConfig.frameMaxLength);
+        }
+
+        ByteBuf batch = alloc.ioBuffer(length);
+        try {
+            RemotingCommandCodec.encodeBatch(commands, batch);
+        } catch (Throwable e) {
+            batch.release();
+            throw e;
+        }
+
+        for (RemotingCommand command : commands) {
+            command.release();
+        }
+        return new RemotingCommand().setType(BATCH).setBodyBuffer(batch);
+    }
+
+    /**
+     * 接收方授予流的发送方可以继续发送的分片数
+     *
+     * @param reqId   流的 reqId
+     * @param credits 分片数
+     */
+    public static RemotingCommand credit(int reqId, int credits) {
+        return new RemotingCommand().setReqId(reqId).setType(CREDIT).setCode(credits);
+    }
+
+    /**
+     * reqId 在发送时由连接分配
+     */
     public static RemotingCommand request(byte version, int code, byte[] body, Map<String, String> extFields) {
-        return new RemotingCommand().setReqId(requestId.getAndIncrement()).setVersion(version).setCode(code).setBody(body).setExtFields(extFields);
+        return new RemotingCommand().setVersion(version).setCode(code).setBody(body).setExtFields(extFields);
     }
 
     public static RemotingCommand request(int code, byte[] body, Map<String, String> extFields) {
@@ -164,4 +436,14 @@ public class RemotingCommand implements Serializable {
     public static RemotingCommand failure(int reqId, int code, String remark) {
         return failure((byte) 0, reqId, code, remark);
     }
+
+    private static final class Unpacked {
+        private final Class<?> type;
+        private final Object value;
+
+        private Unpacked(Class<?> type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
 }
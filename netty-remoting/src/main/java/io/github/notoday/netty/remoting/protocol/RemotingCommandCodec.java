@@ -0,0 +1,545 @@
+package io.github.notoday.netty.remoting.protocol;
+
+import io.github.notoday.netty.remoting.compression.Compressor;
+import io.github.notoday.netty.remoting.compression.CompressorTable;
+import io.github.notoday.netty.remoting.config.NettySystemConfig;
+import io.github.notoday.netty.remoting.serializer.SerializerTable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.compression.DecompressionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制协议编解码
+ * <p>
+ * 取代整条指令的 JSON 序列化: 定长头部字段直接读写, 字符串按 UTF-8 带长度前缀, body 原样写入(不再经过 Base64)
+ *
+ * <pre>
+ * |    4 byte   | 4 byte |  1 byte | 4 byte | 1 byte | 1 byte |   1 byte   | 4 byte |     4 byte    | N byte  |     4 byte     |  N byte   |   4 byte   | N byte |
+ * | MagicNumber | Length | Version | ReqId  |  Type  |  Flag  | Serializer |  Code  | MessageLength | Message | ExtFieldsCount | ExtFields | BodyLength |  Body  |
+ *
+ * ExtField:
+ * |   4 byte  | N byte |    4 byte   | N byte |
+ * | KeyLength |  Key   | ValueLength | Value  |
+ *
+ * Flag 含 FLAG_COMPRESSED 时的 Body:
+ * |    1 byte    |   4 byte  |       N byte       |
+ * | CompressType | RawLength | CompressedContent  |
+ *
+ * Flag 含 FLAG_INDEXED_HEADERS 时 ExtFields 中的每个字符串以 Tag 开头, 见 HeaderTable:
+ * | 1 byte |                                              |
+ * |  Tag   | NULL | LITERAL: Length + Bytes | INSERT: Index(2 byte) + Length + Bytes | INDEXED: Index(2 byte) |
+ *
+ * 批量指令(Type = BATCH)的 Body, 子指令省略 MagicNumber:
+ * | 4 byte |  N byte | 4 byte |  N byte | ...
+ * | Length | Content | Length | Content | ...
+ *
+ * 分片: 第一帧是完整的头部, Flag 含 FLAG_FRAGMENTED, BodyLength 为完整 body 的长度, 帧内只带 body 的开头部分:
+ * | ... | BodyLength | FragmentId(4 byte) | Body 的开头部分 |
+ * 后续帧(Type = TYPE_FRAGMENT)复用头部的前几个字段, ReqId 的位置写 FragmentId, 按顺序追加 body 直到长度凑齐:
+ * |    4 byte   | 4 byte |  1 byte |   4 byte   | 1 byte |  1 byte | N byte |
+ * | MagicNumber | Length | Version | FragmentId |  Type  |  Flag   |  Body  |
+ * </pre>
+ * 长度字段为 -1 表示 null
+ * <p>
+ * 编码前先算出帧的准确长度, 字符串直接以 UTF-8 写入缓冲, 不产生中间 String / byte[]
+ *
+ * @author no-today
+ * @date 2023/10/09 10:12
+ */
+final class RemotingCommandCodec {
+
+    static final byte FLAG_COMPRESSED = 0x01;
+    static final byte FLAG_INDEXED_HEADERS = 0x02;
+    static final byte FLAG_FRAGMENTED = 0x04;
+
+    /**
+     * 分片的后续帧, 只在编解码器内部出现, 不会解码为 RemotingCommand
+     */
+    static final byte TYPE_FRAGMENT = 0x07;
+
+    /**
+     * 分片后续帧的头部: MagicNumber + Length + Version + FragmentId + Type + Flag
+     */
+    static final int FRAGMENT_HEADER_LENGTH = 4 + 4 + 1 + 4 + 1 + 1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_LITERAL = 1;
+    private static final byte TAG_INSERT = 2;
+    private static final byte TAG_INDEXED = 3;
+
+    /**
+     * 压缩 body 的前缀: CompressType + RawLength
+     */
+    static final int COMPRESSED_PREFIX_LENGTH = 1 + 4;
+
+    /**
+     * MagicNumber + Length + Version + ReqId + Type + Flag + Serializer + Code + MessageLength + ExtFieldsCount + BodyLength
+     */
+    private static final int FIXED_HEADER_LENGTH = 4 + 4 + 1 + 4 + 1 + 1 + 1 + 4 + 4 + 4 + 4;
+
+    private static final int NULL_LENGTH = -1;
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private RemotingCommandCodec() {
+    }
+
+    /**
+     * body 之前的所有内容(含 BodyLength)的字节数
+     */
+    static int headerLength(RemotingCommand command) {
+        return headerLength(command, null);
+    }
+
+    /**
+     * @param headerTable 出站字典, 为 null 时按字面量计算
+     */
+    static int headerLength(RemotingCommand command, HeaderTable headerTable) {
+        return FIXED_HEADER_LENGTH + stringLength(command.getMessage()) + extFieldsLength(command.getExtFields(), headerTable);
+    }
+
+    /**
+     * 整个帧的字节数
+     */
+    static int encodedLength(RemotingCommand command) {
+        return headerLength(command) + Math.max(0, command.getBodyLength());
+    }
+
+    /**
+     * 批量指令 body 的字节数
+     */
+    static int batchLength(List<RemotingCommand> commands) {
+        int length = 0;
+        for (RemotingCommand command : commands) {
+            length += encodedLength(command) - 4;
+        }
+        return length;
+    }
+
+    /**
+     * 子指令逐个写出, 不压缩(由外层指令整体压缩)
+     */
+    static void encodeBatch(List<RemotingCommand> commands, ByteBuf out) {
+        for (RemotingCommand command : commands) {
+            encodeContent(command, out, null, (byte) 0, command.getBodyLength());
+            writeBody(command, out);
+        }
+    }
+
+    /**
+     * 子指令的 body 以 batch 的 retained slice 承载
+     */
+    static List<RemotingCommand> decodeBatch(ByteBuf batch, SerializerTable serializerTable) throws Exception {
+        List<RemotingCommand> commands = new ArrayList<>();
+        try {
+            while (batch.isReadable()) {
+                int length = batch.readInt();
+                commands.add(decode(batch.readSlice(length), serializerTable, CompressorTable.DEFAULT, null, batch.alloc()));
+            }
+            return commands;
+        } catch (Throwable e) {
+            for (RemotingCommand command : commands) {
+                command.release();
+            }
+            throw e;
+        }
+    }
+
+    static void encode(RemotingCommand command, ByteBuf out) {
+        encode(command, out, null);
+    }
+
+    static void encode(RemotingCommand command, ByteBuf out, HeaderTable headerTable) {
+        encodeHeader(command, out, headerTable);
+        writeBody(command, out);
+    }
+
+    private static void writeBody(RemotingCommand command, ByteBuf out) {
+        ByteBuf bodyBuffer = command.getBodyBuffer();
+        if (bodyBuffer != null) {
+            out.writeBytes(bodyBuffer, bodyBuffer.readerIndex(), bodyBuffer.readableBytes());
+        } else if (command.getBody() != null) {
+            out.writeBytes(command.getBody());
+        }
+    }
+
+    static void encodeHeader(RemotingCommand command, ByteBuf out, HeaderTable headerTable) {
+        encodeHeader(command, out, headerTable, (byte) 0, command.getBodyLength());
+    }
+
+    /**
+     * 写出压缩 body 之前的所有内容(含压缩前缀), 压缩后的内容由调用方紧随其后写出
+     */
+    static void encodeCompressedHeader(RemotingCommand command, ByteBuf out, HeaderTable headerTable, byte compressType, int compressedLength) {
+        encodeHeader(command, out, headerTable, FLAG_COMPRESSED, COMPRESSED_PREFIX_LENGTH + compressedLength);
+        writeCompressedPrefix(out, compressType, command.getBodyLength());
+    }
+
+    static void writeCompressedPrefix(ByteBuf out, byte compressType, int rawLength) {
+        out.writeByte(compressType);
+        out.writeInt(rawLength);
+    }
+
+    /**
+     * 写出分片第一帧的头部, 帧长度只算 body 的开头部分
+     *
+     * @param flag        0 或 FLAG_COMPRESSED(此时 body 含压缩前缀)
+     * @param bodyLength  完整 body 的长度
+     * @param firstLength 第一帧携带的 body 长度
+     */
+    static void encodeFragmentedHeader(RemotingCommand command, ByteBuf out, HeaderTable headerTable, byte flag, int bodyLength, int fragmentId, int firstLength) {
+        int start = out.writerIndex();
+        encodeHeader(command, out, headerTable, (byte) (flag | FLAG_FRAGMENTED), bodyLength);
+        out.writeInt(fragmentId);
+        out.setInt(start + 4, out.writerIndex() - start - 8 + firstLength);
+    }
+
+    /**
+     * 写出分片后续帧的头部, body 由调用方紧随其后写出
+     */
+    static void encodeFragmentHeader(ByteBuf out, byte version, int fragmentId, int length) {
+        out.writeInt(RemotingCommand.MAGIC_NUMBER);
+        out.writeInt(FRAGMENT_HEADER_LENGTH - 8 + length);
+        out.writeByte(version);
+        out.writeInt(fragmentId);
+        out.writeByte(TYPE_FRAGMENT);
+        out.writeByte(0);
+    }
+
+    /**
+     * 写出 body 之前的所有内容(含 BodyLength), 帧长度按完整 body 计算, body 由调用方紧随其后写出
+     */
+    private static void encodeHeader(RemotingCommand command, ByteBuf out, HeaderTable headerTable, byte flag, int bodyLength) {
+        out.writeInt(RemotingCommand.MAGIC_NUMBER);
+        encodeContent(command, out, headerTable, flag, bodyLength);
+    }
+
+    /**
+     * 从 Length 写到 BodyLength
+     */
+    private static void encodeContent(RemotingCommand command, ByteBuf out, HeaderTable headerTable, byte flag, int bodyLength) {
+        Map<String, String> extFields = command.getExtFields();
+        if (headerTable != null && extFields != null) flag |= FLAG_INDEXED_HEADERS;
+
+        // 先占位, 写完头部后回填长度
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+
+        out.writeByte(command.getVersion());
+        out.writeInt(command.getReqId());
+        out.writeByte(command.getType());
+        out.writeByte(flag);
+        out.writeByte(command.getSerializerId());
+        out.writeInt(command.getCode());
+
+        writeString(out, command.getMessage());
+        if ((flag & FLAG_INDEXED_HEADERS) != 0) {
+            writeIndexedExtFields(out, extFields, headerTable);
+        } else {
+            writeExtFields(out, extFields);
+        }
+
+        out.writeInt(bodyLength);
+
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4 + Math.max(0, bodyLength));
+    }
+
+    /**
+     * body 以 frame 的 retained slice 承载, 不做拷贝
+     *
+     * @param frame           去掉了 MagicNumber 与 Length 的帧内容
+     * @param serializerTable 绑定到指令上, 用于解析 body
+     * @param compressorTable 用于解压 body
+     * @param headerTable     入站字典, 未启用时为 null
+     * @param alloc           解压输出的缓冲分配器
+     */
+    static RemotingCommand decode(ByteBuf frame, SerializerTable serializerTable, CompressorTable compressorTable, HeaderTable headerTable, ByteBufAllocator alloc) throws Exception {
+        return decode(frame, serializerTable, compressorTable, headerTable, alloc, null);
+    }
+
+    /**
+     * @param fragments 接收中的分片, 为 null 表示不接受分片
+     * @return 收到的是分片且还没收齐时返回 null
+     */
+    static RemotingCommand decode(ByteBuf frame, SerializerTable serializerTable, CompressorTable compressorTable, HeaderTable headerTable, ByteBufAllocator alloc, FragmentTable fragments) throws Exception {
+        byte version = frame.readByte();
+        int reqId = frame.readInt();
+        byte type = frame.readByte();
+        byte flag = frame.readByte();
+        if (type == TYPE_FRAGMENT) {
+            return decodeFragment(frame, reqId, compressorTable, alloc, fragments);
+        }
+
+        RemotingCommand command = new RemotingCommand();
+        command.setVersion(version);
+        command.setReqId(reqId);
+        command.setType(type);
+        command.setSerializerId(frame.readByte());
+        command.setSerializerTable(serializerTable);
+        command.setCode(frame.readInt());
+
+        command.setMessage(readString(frame));
+        if ((flag & FLAG_INDEXED_HEADERS) != 0) {
+            if (headerTable == null) {
+                throw new CorruptedFrameException("received indexed headers, but header table not enabled");
+            }
+            command.setExtFields(readIndexedExtFields(frame, headerTable));
+        } else {
+            command.setExtFields(readExtFields(frame));
+        }
+
+        int bodyLength = frame.readInt();
+        if ((flag & FLAG_FRAGMENTED) != 0) {
+            int fragmentId = frame.readInt();
+            if (fragments == null) {
+                throw new CorruptedFrameException("received fragmented frame, but fragments not accepted");
+            }
+            if (bodyLength < 0 || bodyLength > NettySystemConfig.frameMaxLength) {
+                throw new TooLongFrameException("fragmented body length " + bodyLength + " exceeds " + NettySystemConfig.frameMaxLength);
+            }
+
+            // 不按声明的长度预分配, 随内容到达扩容
+            ByteBuf body = alloc.buffer(Math.min(bodyLength, frame.readableBytes()), bodyLength);
+            try {
+                fragments.add(fragmentId, new FragmentTable.Fragment(command, flag, bodyLength, body));
+            } catch (Exception e) {
+                body.release();
+                throw e;
+            }
+            return decodeFragment(frame, fragmentId, compressorTable, alloc, fragments);
+        }
+
+        if ((flag & FLAG_COMPRESSED) != 0) {
+            command.setBodyBuffer(decompress(frame, bodyLength, compressorTable, alloc));
+        } else if (bodyLength == 0) {
+            command.setBody(EMPTY_BYTES);
+        } else if (bodyLength != NULL_LENGTH) {
+            command.setBodyBuffer(frame.readRetainedSlice(bodyLength));
+        }
+        return command;
+    }
+
+    /**
+     * 追加分片内容, 收齐后按完整帧的方式处理 body
+     */
+    private static RemotingCommand decodeFragment(ByteBuf frame, int fragmentId, CompressorTable compressorTable, ByteBufAllocator alloc, FragmentTable fragments) throws Exception {
+        FragmentTable.Fragment fragment = fragments == null ? null : fragments.get(fragmentId);
+        if (fragment == null) {
+            throw new CorruptedFrameException("unknown fragment id: " + fragmentId);
+        }
+
+        ByteBuf body = fragment.body;
+        if (frame.readableBytes() > body.maxWritableBytes()) {
+            fragments.remove(fragmentId).body.release();
+            throw new CorruptedFrameException("fragment " + fragmentId + " exceeds body length " + fragment.bodyLength);
+        }
+        body.writeBytes(frame);
+        if (body.maxWritableBytes() > 0) {
+            return null;
+        }
+
+        fragments.remove(fragmentId);
+        RemotingCommand command = fragment.command;
+        try {
+            if ((fragment.flag & FLAG_COMPRESSED) != 0) {
+                command.setBodyBuffer(decompress(body, body.readableBytes(), compressorTable, alloc));
+            } else if (fragment.bodyLength == 0) {
+                command.setBody(EMPTY_BYTES);
+            } else {
+                command.setBodyBuffer(body.retain());
+            }
+        } finally {
+            body.release();
+        }
+        return command;
+    }
+
+    private static ByteBuf decompress(ByteBuf frame, int bodyLength, CompressorTable compressorTable, ByteBufAllocator alloc) throws Exception {
+        byte compressType = frame.readByte();
+        int rawLength = frame.readInt();
+        ByteBuf compressed = frame.readSlice(bodyLength - COMPRESSED_PREFIX_LENGTH);
+
+        Compressor compressor = compressorTable.get(compressType);
+        if (compressor == null) {
+            throw new DecompressionException("compressor not registered, id: " + compressType);
+        }
+        if (rawLength < 0 || rawLength > NettySystemConfig.frameMaxLength) {
+            throw new TooLongFrameException("decompressed body length " + rawLength + " exceeds " + NettySystemConfig.frameMaxLength);
+        }
+
+        // 容量上限即原始长度, 防止恶意数据解压膨胀
+        ByteBuf raw = alloc.buffer(rawLength, rawLength);
+        try {
+            compressor.decompress(compressed, raw);
+            if (raw.readableBytes() != rawLength) {
+                throw new DecompressionException("decompressed body length " + raw.readableBytes() + " mismatch, expected " + rawLength);
+            }
+            return raw;
+        } catch (Throwable e) {
+            raw.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 启用字典时按当前表内容估算; 同一条指令内的插入可能使实际长度略有出入, 帧长度以实际写出为准
+     */
+    private static int extFieldsLength(Map<String, String> extFields, HeaderTable headerTable) {
+        if (extFields == null) return 0;
+
+        int length = 0;
+        for (Map.Entry<String, String> entry : extFields.entrySet()) {
+            if (headerTable == null) {
+                length += 4 + stringLength(entry.getKey()) + 4 + stringLength(entry.getValue());
+            } else {
+                length += indexedStringLength(entry.getKey(), headerTable, true) + indexedStringLength(entry.getValue(), headerTable, headerTable.isIndexValues());
+            }
+        }
+        return length;
+    }
+
+    private static int indexedStringLength(String value, HeaderTable headerTable, boolean index) {
+        if (value == null) return 1;
+        if (index) {
+            if (headerTable.indexOf(value) >= 0) return 1 + 2;
+            if (headerTable.indexable(value)) return 1 + 2 + 4 + stringLength(value);
+        }
+        return 1 + 4 + stringLength(value);
+    }
+
+    private static void writeIndexedExtFields(ByteBuf out, Map<String, String> extFields, HeaderTable headerTable) {
+        out.writeInt(extFields.size());
+        for (Map.Entry<String, String> entry : extFields.entrySet()) {
+            writeIndexedString(out, entry.getKey(), headerTable, true);
+            writeIndexedString(out, entry.getValue(), headerTable, headerTable.isIndexValues());
+        }
+    }
+
+    private static void writeIndexedString(ByteBuf out, String value, HeaderTable headerTable, boolean index) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+
+        if (index) {
+            int i = headerTable.indexOf(value);
+            if (i >= 0) {
+                out.writeByte(TAG_INDEXED);
+                out.writeShort(i);
+                return;
+            }
+            if (headerTable.indexable(value)) {
+                out.writeByte(TAG_INSERT);
+                out.writeShort(headerTable.insert(value));
+                writeString(out, value);
+                return;
+            }
+        }
+
+        out.writeByte(TAG_LITERAL);
+        writeString(out, value);
+    }
+
+    private static Map<String, String> readIndexedExtFields(ByteBuf in, HeaderTable headerTable) {
+        int size = in.readInt();
+        if (size == NULL_LENGTH) return null;
+        // 每条至少是两个 TAG_NULL
+        checkExtFieldsSize(in, size, 2);
+
+        Map<String, String> extFields = new HashMap<>(Math.max(4, (int) (size / 0.75f) + 1));
+        for (int i = 0; i < size; i++) {
+            extFields.put(readIndexedString(in, headerTable), readIndexedString(in, headerTable));
+        }
+        return extFields;
+    }
+
+    private static String readIndexedString(ByteBuf in, HeaderTable headerTable) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_LITERAL:
+                return readString(in);
+            case TAG_INSERT:
+                int index = in.readUnsignedShort();
+                String value = readString(in);
+                headerTable.set(index, value);
+                return value;
+            case TAG_INDEXED:
+                return headerTable.get(in.readUnsignedShort());
+            default:
+                throw new CorruptedFrameException("unknown header tag: " + tag);
+        }
+    }
+
+    private static void writeExtFields(ByteBuf out, Map<String, String> extFields) {
+        if (extFields == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        out.writeInt(extFields.size());
+        for (Map.Entry<String, String> entry : extFields.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readExtFields(ByteBuf in) {
+        int size = in.readInt();
+        if (size == NULL_LENGTH) return null;
+        // 每条至少是两个长度字段
+        checkExtFieldsSize(in, size, 8);
+
+        Map<String, String> extFields = new HashMap<>(Math.max(4, (int) (size / 0.75f) + 1));
+        for (int i = 0; i < size; i++) {
+            extFields.put(readString(in), readString(in));
+        }
+        return extFields;
+    }
+
+    /**
+     * 条数来自对端, 按每条的最小长度与剩余字节比较, 避免伪造的条数导致超大的预分配
+     */
+    private static void checkExtFieldsSize(ByteBuf in, int size, int minEntryLength) {
+        if (size < 0 || size > in.readableBytes() / minEntryLength) {
+            throw new CorruptedFrameException("invalid extFields size: " + size + ", readable bytes: " + in.readableBytes());
+        }
+    }
+
+    private static int stringLength(String value) {
+        return value == null ? 0 : ByteBufUtil.utf8Bytes(value);
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        int length = ByteBufUtil.utf8Bytes(value);
+        out.writeInt(length);
+        // 只预留准确长度, writeUtf8 会按最坏情况(3 倍)扩容
+        ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) return null;
+        if (length < 0 || length > in.readableBytes()) {
+            throw new CorruptedFrameException("invalid string length: " + length + ", readable bytes: " + in.readableBytes());
+        }
+
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
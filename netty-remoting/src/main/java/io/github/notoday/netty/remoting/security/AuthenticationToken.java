@@ -13,4 +13,9 @@ public class AuthenticationToken {
 
     private String token;
     private String login;
+
+    /**
+     * 客户端的 extFields 字典容量, 见 HeaderTable
+     */
+    private int headerTableSize;
 }
@@ -1,6 +1,7 @@
 package io.github.notoday.netty.remoting.security;
 
 import io.github.notoday.netty.remoting.common.RemotingSystemCode;
+import io.github.notoday.netty.remoting.protocol.HeaderTable;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
 import io.github.notoday.netty.remoting.common.RemotingUtil;
 import io.netty.channel.Channel;
@@ -21,9 +22,21 @@ public class NettyAuthenticatorHandler extends SimpleChannelInboundHandler<Remot
     private static final AttributeKey<Integer> REQUEST_ID = AttributeKey.valueOf("_RequestId");
 
     private final Authenticator authenticator;
+    private final int headerTableSize;
+    private final boolean headerTableIndexValues;
+
+    /**
+     * @param headerTableSize        服务端的 extFields 字典容量, 小于等于 0 表示不启用
+     * @param headerTableIndexValues 字典是否同时索引 value
+     */
+    public NettyAuthenticatorHandler(Authenticator authenticator, int headerTableSize, boolean headerTableIndexValues) {
+        this.authenticator = authenticator;
+        this.headerTableSize = headerTableSize;
+        this.headerTableIndexValues = headerTableIndexValues;
+    }
 
     public NettyAuthenticatorHandler(Authenticator authenticator) {
-        this.authenticator = authenticator;
+        this(authenticator, 0, false);
     }
 
     private static void bindAuthentication(Channel channel, Authentication authentication) {
@@ -46,7 +59,12 @@ public class NettyAuthenticatorHandler extends SimpleChannelInboundHandler<Remot
     protected void channelRead0(ChannelHandlerContext ctx, RemotingCommand msg) throws Exception {
         bindReqId(ctx.channel(), msg.getReqId());
 
-        AuthenticationToken token = msg.unpack(AuthenticationToken.class);
+        AuthenticationToken token;
+        try {
+            token = msg.unpack(AuthenticationToken.class);
+        } finally {
+            msg.release();
+        }
         Authentication authentication;
         if (this.authenticator == null) {
             // default
@@ -60,7 +78,14 @@ public class NettyAuthenticatorHandler extends SimpleChannelInboundHandler<Remot
         ctx.pipeline().remove(this);
 
         log.debug("NETTY AUTHENTICATION SUCCESS: {}", authentication.getPrincipal());
-        ctx.writeAndFlush(RemotingCommand.success(msg.getReqId()));
+
+        // 告知客户端服务端的字典容量, 出站方向按双方较小值启用
+        RemotingCommand response = RemotingCommand.success(msg.getReqId());
+        if (this.headerTableSize > 0) {
+            response.putExtFields(HeaderTable.HEADER_TABLE_SIZE, String.valueOf(this.headerTableSize));
+            HeaderTable.enable(ctx.channel(), Math.min(this.headerTableSize, token.getHeaderTableSize()), this.headerTableIndexValues);
+        }
+        ctx.writeAndFlush(response);
 
         // Publish event
         ctx.fireUserEventTriggered(AuthenticationEvent.SUCCESS);
@@ -0,0 +1,29 @@
+package io.github.notoday.netty.remoting.serializer;
+
+import com.alibaba.fastjson2.JSON;
+
+/**
+ * fastjson2 文本 JSON, 默认序列化器
+ *
+ * @author no-today
+ * @date 2023/10/10 14:10
+ */
+public class JsonSerializer implements Serializer {
+
+    public static final byte ID = 0;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] serialize(Object obj) {
+        return JSON.toJSONBytes(obj);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return JSON.parseObject(bytes, clazz);
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.notoday.netty.remoting.serializer;
+
+import com.alibaba.fastjson2.JSONB;
+
+/**
+ * fastjson2 JSONB 二进制格式, 比文本 JSON 更紧凑, 编解码也更快
+ *
+ * @author no-today
+ * @date 2023/10/10 14:12
+ */
+public class JsonbSerializer implements Serializer {
+
+    public static final byte ID = 1;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] serialize(Object obj) {
+        return JSONB.toBytes(obj);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return JSONB.parseObject(bytes, clazz);
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.notoday.netty.remoting.serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 原样透传, 只接受 byte[] 与 String(UTF-8)
+ *
+ * @author no-today
+ * @date 2023/10/10 14:15
+ */
+public class RawSerializer implements Serializer {
+
+    public static final byte ID = 2;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] serialize(Object obj) {
+        if (obj == null) return null;
+        if (obj instanceof byte[]) return (byte[]) obj;
+        if (obj instanceof String) return ((String) obj).getBytes(StandardCharsets.UTF_8);
+
+        throw new IllegalArgumentException("raw serializer only supports byte[] and String, but got " + obj.getClass().getName());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        if (bytes == null) return null;
+        if (clazz == byte[].class) return (T) bytes;
+        if (clazz == String.class) return (T) new String(bytes, StandardCharsets.UTF_8);
+
+        throw new IllegalArgumentException("raw serializer only supports byte[] and String, but got " + clazz.getName());
+    }
+}
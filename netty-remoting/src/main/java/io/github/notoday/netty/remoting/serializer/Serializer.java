@@ -0,0 +1,21 @@
+package io.github.notoday.netty.remoting.serializer;
+
+/**
+ * body 序列化器
+ * <p>
+ * 编号随指令写入帧头, 同一连接上不同指令可以使用不同的序列化器, 对端根据编号选择对应实现反序列化
+ *
+ * @author no-today
+ * @date 2023/10/10 14:02
+ */
+public interface Serializer {
+
+    /**
+     * 序列化器编号, 取值 0~127, 通信双方需注册相同编号的实现
+     */
+    byte getId();
+
+    byte[] serialize(Object obj);
+
+    <T> T deserialize(byte[] bytes, Class<T> clazz);
+}
@@ -0,0 +1,47 @@
+package io.github.notoday.netty.remoting.serializer;
+
+/**
+ * 按编号索引的序列化器表, 内置 JSON / JSONB / RAW
+ * <p>
+ * 与处理器表一样, 需要在启动前完成注册
+ *
+ * @author no-today
+ * @date 2023/10/10 14:20
+ */
+public class SerializerTable {
+
+    public static final Serializer JSON = new JsonSerializer();
+    public static final Serializer JSONB = new JsonbSerializer();
+    public static final Serializer RAW = new RawSerializer();
+
+    /**
+     * 只包含内置序列化器, 用于没有绑定序列化器表的指令
+     */
+    public static final SerializerTable DEFAULT = new SerializerTable();
+
+    private final Serializer[] table = new Serializer[128];
+
+    public SerializerTable() {
+        register(JSON);
+        register(JSONB);
+        register(RAW);
+    }
+
+    /**
+     * 注册序列化器, 相同编号会覆盖已有实现(包括内置实现)
+     */
+    public void register(Serializer serializer) {
+        byte id = serializer.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("serializer id must be in [0, 127], but got " + id);
+        }
+        this.table[id] = serializer;
+    }
+
+    /**
+     * @return 未注册时返回 null
+     */
+    public Serializer get(byte id) {
+        return id < 0 ? null : this.table[id];
+    }
+}
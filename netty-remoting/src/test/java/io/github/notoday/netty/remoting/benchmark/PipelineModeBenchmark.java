@@ -0,0 +1,94 @@
+package io.github.notoday.netty.remoting.benchmark;
+
+import io.github.notoday.netty.remoting.NettyRequestProcessor;
+import io.github.notoday.netty.remoting.config.NettyClientConfig;
+import io.github.notoday.netty.remoting.config.NettyServerConfig;
+import io.github.notoday.netty.remoting.core.NettyRemotingClient;
+import io.github.notoday.netty.remoting.core.NettyRemotingServer;
+import io.github.notoday.netty.remoting.protocol.Any;
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.channel.ChannelHandlerContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编解码与分发在 workerThreads 线程池中执行 vs 直接在 IO 线程中执行, 小请求的同步往返
+ * <p>
+ * 运行: mvn test-compile 后执行 main 方法, 或 java -cp target/test-classes:依赖 org.openjdk.jmh.Main PipelineModeBenchmark
+ *
+ * @author no-today
+ * @date 2023/10/20 10:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PipelineModeBenchmark {
+
+    @Param({"false", "true"})
+    public boolean codecOnEventLoop;
+
+    private NettyRemotingServer server;
+    private NettyRemotingClient client;
+    private ExecutorService processorExecutor;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setListenPort(17879);
+        serverConfig.setEnableSSL(false);
+        serverConfig.setCodecOnEventLoop(this.codecOnEventLoop);
+        serverConfig.setAsyncSemaphoreValue(65535);
+
+        this.processorExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.server = new NettyRemotingServer(serverConfig);
+        this.server.registerDefaultProcessor(this.processorExecutor, new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+                return RemotingCommand.success(request.getReqId(), request.getBody(), null);
+            }
+        });
+        this.server.start();
+
+        NettyClientConfig clientConfig = new NettyClientConfig();
+        clientConfig.setPort(17879);
+        clientConfig.setEnableSSL(false);
+        clientConfig.setCodecOnEventLoop(this.codecOnEventLoop);
+        this.client = new NettyRemotingClient(clientConfig);
+        this.client.connect("", "benchmark");
+
+        this.body = Any.pack("ping");
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.client.shutdown();
+        this.server.shutdown();
+        this.processorExecutor.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public RemotingCommand invokeSync() throws Exception {
+        return this.client.invokeSync(RemotingCommand.request(1024, this.body), 3000);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public RemotingCommand invokeSyncConcurrent() throws Exception {
+        return this.client.invokeSync(RemotingCommand.request(1024, this.body), 3000);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PipelineModeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.notoday.netty.remoting.benchmark;
+
+import io.github.notoday.netty.remoting.core.ResponseFuture;
+import io.github.notoday.netty.remoting.core.ResponseTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 等待响应的请求表: ConcurrentHashMap<Integer, ResponseFuture> vs ResponseTable
+ * <p>
+ * 预先放入 inFlight 个请求, 每次操作放入一个新请求并移除最早的一个, 保持表的大小不变; 另外测量一次过期扫描
+ * <p>
+ * 运行: mvn test-compile 后执行 main 方法, 或 java -cp target/test-classes:依赖 org.openjdk.jmh.Main ResponseTableBenchmark
+ *
+ * @author no-today
+ * @date 2023/10/21 15:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ResponseTableBenchmark {
+
+    @Param({"1000", "200000"})
+    public int inFlight;
+
+    private ConcurrentMap<Integer, ResponseFuture> map;
+    private ResponseTable table;
+    private ResponseFuture future;
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    /**
+     * 每个线程使用不同的 reqId 区间, 并预先放入 inFlight 个请求
+     */
+    @State(Scope.Thread)
+    public static class Sequence {
+        int base;
+        int next;
+
+        @Setup
+        public void setup(ResponseTableBenchmark benchmark) {
+            this.base = benchmark.threadIndex.incrementAndGet() << 24;
+            benchmark.fill(this.base);
+            this.next = benchmark.inFlight;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        this.map = new ConcurrentHashMap<>(128);
+        this.table = new ResponseTable();
+        this.future = new ResponseFuture(null, 0, 60000);
+        // 供过期扫描使用
+        fill(0);
+    }
+
+    private void fill(int base) {
+        for (int i = 0; i < this.inFlight; i++) {
+            this.map.put(base + i, this.future);
+            this.table.put(base + i, this.future);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object concurrentHashMap(Sequence seq) {
+        int next = seq.next++;
+        this.map.put(seq.base + (next & 0xFFFFFF), this.future);
+        return this.map.remove(seq.base + ((next - this.inFlight) & 0xFFFFFF));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object responseTable(Sequence seq) {
+        int next = seq.next++;
+        this.table.put(seq.base + (next & 0xFFFFFF), this.future);
+        return this.table.remove(seq.base + ((next - this.inFlight) & 0xFFFFFF));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Object scanConcurrentHashMap() {
+        List<ResponseFuture> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        for (ResponseFuture f : this.map.values()) {
+            if (f.isTimeout(now)) expired.add(f);
+        }
+        return expired;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Object scanResponseTable() {
+        List<ResponseFuture> expired = new ArrayList<>();
+        this.table.expire(System.nanoTime(), expired);
+        return expired;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ResponseTableBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.notoday.netty.remoting.benchmark;
+
+import io.github.notoday.netty.remoting.NettyRequestProcessor;
+import io.github.notoday.netty.remoting.config.NettyClientConfig;
+import io.github.notoday.netty.remoting.config.NettyServerConfig;
+import io.github.notoday.netty.remoting.core.NettyRemotingClient;
+import io.github.notoday.netty.remoting.core.NettyRemotingServer;
+import io.github.notoday.netty.remoting.protocol.Any;
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.channel.ChannelHandlerContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回环地址上 epoll vs io_uring 传输, 小请求的同步往返(延迟)与并发吞吐
+ * <p>
+ * io_uring 需要 Linux 5.9 以上内核, 并在 classpath 中加入 netty-incubator-transport-native-io_uring 的平台 native 包(classifier linux-x86_64),
+ * 否则回退到 epoll, 两组结果相同
+ * <p>
+ * 运行: mvn test-compile 后执行 main 方法, 或 java -cp target/test-classes:依赖 org.openjdk.jmh.Main TransportBenchmark
+ *
+ * @author no-today
+ * @date 2023/10/20 11:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"false", "true"})
+    public boolean useIoUring;
+
+    private NettyRemotingServer server;
+    private NettyRemotingClient client;
+    private ExecutorService processorExecutor;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setListenPort(17880);
+        serverConfig.setEnableSSL(false);
+        serverConfig.setUseIoUring(this.useIoUring);
+        serverConfig.setAsyncSemaphoreValue(65535);
+
+        this.processorExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.server = new NettyRemotingServer(serverConfig);
+        this.server.registerDefaultProcessor(this.processorExecutor, new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+                return RemotingCommand.success(request.getReqId(), request.getBody(), null);
+            }
+        });
+        this.server.start();
+
+        NettyClientConfig clientConfig = new NettyClientConfig();
+        clientConfig.setPort(17880);
+        clientConfig.setEnableSSL(false);
+        clientConfig.setUseIoUring(this.useIoUring);
+        this.client = new NettyRemotingClient(clientConfig);
+        this.client.connect("", "benchmark");
+
+        this.body = Any.pack("ping");
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.client.shutdown();
+        this.server.shutdown();
+        this.processorExecutor.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public RemotingCommand invokeSync() throws Exception {
+        return this.client.invokeSync(RemotingCommand.request(1024, this.body), 3000);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public RemotingCommand invokeSyncConcurrent() throws Exception {
+        return this.client.invokeSync(RemotingCommand.request(1024, this.body), 3000);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
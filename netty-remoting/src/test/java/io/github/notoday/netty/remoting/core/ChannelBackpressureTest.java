@@ -0,0 +1,134 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author no-today
+ * @date 2023/10/19 16:20
+ */
+public class ChannelBackpressureTest {
+
+    @Test
+    public void dropOldest() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelBackpressure backpressure = ChannelBackpressure.get(channel);
+        List<String> events = new ArrayList<>();
+
+        assertFalse(backpressure.shouldQueue());
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        assertTrue(backpressure.shouldQueue());
+
+        for (int i = 0; i < 3; i++) {
+            backpressure.enqueue(pendingWrite(events, i), 2);
+        }
+        assertEquals(List.of("drop-0"), events);
+
+        // 恢复可写后按顺序写出
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        ChannelBackpressure.signal(channel);
+        assertEquals(List.of("drop-0", "write-1", "write-2"), events);
+        assertFalse(backpressure.shouldQueue());
+
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void drainOnClose() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelBackpressure backpressure = ChannelBackpressure.get(channel);
+        List<String> events = new ArrayList<>();
+
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        backpressure.enqueue(pendingWrite(events, 0), 2);
+        assertTrue(events.isEmpty());
+
+        // 连接断开时交给写出流程失败
+        channel.close();
+        ChannelBackpressure.signal(channel);
+        assertEquals(List.of("write-0"), events);
+    }
+
+    @Test
+    public void drainOrder() throws Exception {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        LocalAddress address = new LocalAddress(UUID.randomUUID().toString());
+        Channel server = new ServerBootstrap().group(group).channel(LocalServerChannel.class).childHandler(new ChannelInboundHandlerAdapter()).bind(address).sync().channel();
+        Channel channel = new Bootstrap().group(group).channel(LocalChannel.class).handler(new ChannelInboundHandlerAdapter()).connect(address).sync().channel();
+
+        int count = 100000;
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>(count));
+        AtomicBoolean outsideEventLoop = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(count);
+
+        // 可写性事件与入队同时触发写出
+        Thread signaler = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                ChannelBackpressure.signal(channel);
+            }
+        });
+
+        try {
+            ChannelBackpressure backpressure = ChannelBackpressure.get(channel);
+            signaler.start();
+            for (int i = 0; i < count; i++) {
+                int seq = i;
+                backpressure.enqueue(new ChannelBackpressure.PendingWrite() {
+                    @Override
+                    public void write() {
+                        if (!channel.eventLoop().inEventLoop()) outsideEventLoop.set(true);
+                        written.add(seq);
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void drop() {
+                        fail("dropped: " + seq);
+                    }
+                }, count);
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            signaler.join();
+            assertFalse(outsideEventLoop.get());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, (int) written.get(i));
+            }
+        } finally {
+            channel.close().sync();
+            server.close().sync();
+            group.shutdownGracefully();
+        }
+    }
+    private static ChannelBackpressure.PendingWrite pendingWrite(List<String> events, int i) {
+        return new ChannelBackpressure.PendingWrite() {
+            @Override
+            public void write() {
+                events.add("write-" + i);
+            }
+
+            @Override
+            public void drop() {
+                events.add("drop-" + i);
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 每种 flush 条件各一个用例, 断言 flush 前消息留在出站缓冲中, 满足条件后写出
+ *
+ * @author no-today
+ * @date 2023/10/22 14:20
+ */
+public class FlushCoalescingHandlerTest {
+
+    @Test
+    public void maxBytes() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 32, 0));
+        write(channel, 16);
+        assertNull(channel.readOutbound());
+
+        write(channel, 16);
+        assertFlushed(channel, 2);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void maxWrites() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(2, 0, 0));
+        write(channel, 1);
+        assertNull(channel.readOutbound());
+
+        write(channel, 1);
+        assertFlushed(channel, 2);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void nextTask() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 0, 0));
+        // EmbeddedChannel 每次出站操作后都会执行 EventLoop 中的任务, 这里只写出一次
+        write(channel, 1);
+        assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+        assertFlushed(channel, 1);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void maxDelay() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 0, 1000));
+        write(channel, 1);
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+
+        Thread.sleep(5);
+        channel.runScheduledPendingTasks();
+        assertFlushed(channel, 1);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void channelReadComplete() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 0, 1000), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ctx.writeAndFlush(msg);
+            }
+        });
+
+        // 读取中的 flush 等本轮读取结束, 不提交延后任务
+        channel.pipeline().fireChannelRead(buf(1));
+        channel.pipeline().fireChannelRead(buf(1));
+        assertNull(channel.readOutbound());
+
+        channel.pipeline().fireChannelReadComplete();
+        assertFlushed(channel, 2);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void unwritable() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 0, 1000));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(128, 256));
+
+        // 写出时越过高水位, 之后的 flush 不再延后
+        write(channel, 256);
+        assertFlushed(channel, 1);
+
+        write(channel, 8);
+        assertNull(channel.readOutbound());
+
+        // 积压中再写出越过高水位, 连同之前积压的立即写出
+        write(channel, 256);
+        assertFlushed(channel, 2);
+        assertTrue(channel.isWritable());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void close() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 0, 1000));
+        write(channel, 1);
+        assertNull(channel.readOutbound());
+
+        channel.close();
+        assertFlushed(channel, 1);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void exceptionCaught() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(100, 0, 1000));
+        write(channel, 1);
+        assertNull(channel.readOutbound());
+
+        channel.pipeline().fireExceptionCaught(new IllegalStateException("test"));
+        assertFlushed(channel, 1);
+        assertThrows(IllegalStateException.class, channel::checkException);
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * EmbeddedChannel.writeAndFlush 会执行 EventLoop 中的任务, 直接从 pipeline 写出
+     */
+    private static void write(EmbeddedChannel channel, int size) {
+        channel.pipeline().writeAndFlush(buf(size));
+    }
+
+    private static ByteBuf buf(int size) {
+        return Unpooled.wrappedBuffer(new byte[size]);
+    }
+
+    private static void assertFlushed(EmbeddedChannel channel, int count) {
+        for (int i = 0; i < count; i++) {
+            ByteBuf buf = channel.readOutbound();
+            assertNotNull(buf);
+            buf.release();
+        }
+        assertNull(channel.readOutbound());
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.StreamReceiver;
+import io.github.notoday.netty.remoting.common.RemotingSystemCode;
+import io.github.notoday.netty.remoting.config.NettyServerConfig;
+import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author no-today
+ * @date 2023/10/17 16:10
+ */
+public class InboundStreamTest {
+
+    @Test
+    public void windowExceeded() throws Exception {
+        NettyServerConfig config = new NettyServerConfig();
+        config.setStreamWindow(2);
+        TestRemoting remoting = new TestRemoting(config);
+
+        // 接收器阻塞在头部, 之后的分片都不会被消费
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        remoting.registerStreamProcessor(2048, executor, (ctx, header) -> {
+            opened.countDown();
+            blocked.await();
+            return receiver();
+        });
+
+        EmbeddedChannel channel = remoting.newChannel();
+        try {
+            channel.writeInbound(chunk(1));
+            assertTrue(opened.await(1, TimeUnit.SECONDS));
+            channel.writeInbound(chunk(1));
+            channel.writeInbound(chunk(1));
+            assertTrue(channel.isOpen());
+
+            // 发送方没有遵守额度
+            channel.writeInbound(chunk(1));
+            assertFalse(channel.isOpen());
+        } finally {
+            blocked.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void tooManyStreams() {
+        NettyServerConfig config = new NettyServerConfig();
+        config.setStreamMaxInbound(1);
+        TestRemoting remoting = new TestRemoting(config);
+        remoting.registerStreamProcessor(2048, ImmediateEventExecutor.INSTANCE, (ctx, header) -> receiver());
+
+        EmbeddedChannel channel = remoting.newChannel();
+        channel.writeInbound(chunk(1));
+        channel.writeInbound(chunk(2));
+
+        // 第一个流打开后授予的额度
+        RemotingCommand credit = channel.readOutbound();
+        assertTrue(credit.isCredit());
+        RemotingCommand response = channel.readOutbound();
+        assertEquals(2, response.getReqId());
+        assertEquals(RemotingSystemCode.SYSTEM_BUSY, response.getCode());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void executorRejected() {
+        TestRemoting remoting = new TestRemoting(new NettyServerConfig());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        remoting.registerStreamProcessor(2048, executor, (ctx, header) -> {
+            throw new AssertionError("receiver should not run");
+        });
+
+        EmbeddedChannel channel = remoting.newChannel();
+        channel.writeInbound(chunk(1));
+
+        // 响应繁忙并中止, 不在 IO 线程中打开接收器
+        RemotingCommand response = channel.readOutbound();
+        assertEquals(1, response.getReqId());
+        assertEquals(RemotingSystemCode.SYSTEM_BUSY, response.getCode());
+        assertNull(channel.readOutbound());
+        channel.finishAndReleaseAll();
+    }
+
+    private static RemotingCommand chunk(int reqId) {
+        return RemotingCommand.request(2048, new byte[16]).setReqId(reqId).markStreamType();
+    }
+
+    private static StreamReceiver receiver() {
+        return new StreamReceiver() {
+            @Override
+            public void onChunk(ByteBuf chunk) {
+            }
+
+            @Override
+            public RemotingCommand onComplete() {
+                return null;
+            }
+        };
+    }
+
+    private static class TestRemoting extends NettyRemotingAbstract {
+
+        TestRemoting(NettyServerConfig config) {
+            super(16, 16, config);
+        }
+
+        EmbeddedChannel newChannel() {
+            return new EmbeddedChannel(new SimpleChannelInboundHandler<RemotingCommand>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, RemotingCommand msg) throws Exception {
+                    processMessageReceived(ctx, msg);
+                }
+            });
+        }
+
+        @Override
+        public ExecutorService getCallbackExecutor() {
+            return null;
+        }
+
+        @Override
+        protected Timer getTimeoutTimer() {
+            return null;
+        }
+
+        @Override
+        CallbackStripes getCallbackStripes() {
+            return null;
+        }
+
+        @Override
+        ExecutorService getVirtualThreadExecutor() {
+            return null;
+        }
+    }
+}
@@ -1,27 +1,48 @@
 package io.github.notoday.netty.remoting.core;
 
+import io.github.notoday.netty.remoting.ChannelEventListener;
 import io.github.notoday.netty.remoting.NettyRequestProcessor;
+import io.github.notoday.netty.remoting.RPCHook;
 import io.github.notoday.netty.remoting.RemotingProcessable;
+import io.github.notoday.netty.remoting.StreamReceiver;
 import io.github.notoday.netty.remoting.common.ErrorInfo;
 import io.github.notoday.netty.remoting.common.RemotingSystemCode;
+import io.github.notoday.netty.remoting.config.CallbackMode;
 import io.github.notoday.netty.remoting.config.NettyClientConfig;
 import io.github.notoday.netty.remoting.config.NettyServerConfig;
 import io.github.notoday.netty.remoting.exception.RemotingConnectException;
+import io.github.notoday.netty.remoting.exception.RemotingTimeoutException;
 import io.github.notoday.netty.remoting.protocol.Any;
 import io.github.notoday.netty.remoting.protocol.RemotingCommand;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedStream;
+import org.junit.After;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * @author no-today
@@ -40,28 +61,70 @@ public class NettyRemotingServerTest {
         }
     };
 
+    /**
+     * 测试结束时依次关闭, 断言失败也不会占用端口影响后续的测试
+     */
+    private final Deque<Runnable> shutdownHooks = new ArrayDeque<>();
+
+    @After
+    public void shutdown() {
+        while (!this.shutdownHooks.isEmpty()) {
+            try {
+                this.shutdownHooks.pop().run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private NettyRemotingServer newServer(NettyServerConfig config) {
+        NettyRemotingServer server = new NettyRemotingServer(config);
+        this.shutdownHooks.push(server::shutdown);
+        return server;
+    }
+
+    private NettyRemotingClient newClient(NettyClientConfig config) {
+        return newClient(config, null);
+    }
+
+    private NettyRemotingClient newClient(NettyClientConfig config, ChannelEventListener listener) {
+        NettyRemotingClient client = new NettyRemotingClient(config, listener);
+        this.shutdownHooks.push(client::shutdown);
+        return client;
+    }
+
+    private NettyRemotingClient newClient(NettyClientConfig config, ChannelEventListener listener, NettyClientResources resources) {
+        NettyRemotingClient client = new NettyRemotingClient(config, listener, resources);
+        this.shutdownHooks.push(client::shutdown);
+        return client;
+    }
+
+    private static void await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+    }
+
     @Test
     public void listening() throws Exception {
-        NettyRemotingServer server = new NettyRemotingServer(new NettyServerConfig());
+        NettyRemotingServer server = newServer(new NettyServerConfig());
         registerRequestProcessor(server, new AtomicBoolean(false), System.out::println);
 
-        NettyRemotingClient client = new NettyRemotingClient(new NettyClientConfig());
+        NettyRemotingClient client = newClient(new NettyClientConfig());
 
         server.start();
         client.connect("", "no-today");
 
-        TimeUnit.SECONDS.sleep(3);
-        server.shutdown();
-        client.shutdown();
-    }
+        TimeUnit.SECONDS.sleep(3);    }
 
     @Test
     public void login() throws Exception {
-        NettyRemotingServer server = new NettyRemotingServer(new NettyServerConfig());
+        NettyRemotingServer server = newServer(new NettyServerConfig());
         registerRequestProcessor(server, new AtomicBoolean(false), null);
         server.start();
 
-        NettyRemotingClient client = new NettyRemotingClient(new NettyClientConfig(), null);
+        NettyRemotingClient client = newClient(new NettyClientConfig(), null);
 
         // not login throws exception
         assertThrows(RemotingConnectException.class, () -> client.invokeSync(RemotingCommand.request(0, null, null), 200));
@@ -71,17 +134,14 @@ public class NettyRemotingServerTest {
 
         // login success after, ok
         assertTrue(client.invokeSync(RemotingCommand.request(0, null, null), 200).success());
-
-        server.shutdown();
-        client.shutdown();
     }
 
     @Test
     public void sysErrors() throws Exception {
-        NettyRemotingServer server = new NettyRemotingServer(new NettyServerConfig());
+        NettyRemotingServer server = newServer(new NettyServerConfig());
         server.start();
 
-        NettyRemotingClient client = new NettyRemotingClient(new NettyClientConfig());
+        NettyRemotingClient client = newClient(new NettyClientConfig());
         RemotingCommand response = client.connect("", randomString());
         assertTrue(response.success());
 
@@ -101,9 +161,6 @@ public class NettyRemotingServerTest {
         }
 
         cd.await();
-
-        client.shutdown();
-        server.shutdown();
     }
 
     private ResultCallback<RemotingCommand> callback(CountDownLatch cd) {
@@ -163,12 +220,106 @@ public class NettyRemotingServerTest {
         return r.toString();
     }
 
+    @Test
+    public void onewayBatch() throws Exception {
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        NettyRemotingClient client = newClient(new NettyClientConfig());
+
+        int batches = 100, batchSize = 100;
+        CountDownLatch received = new CountDownLatch(batches * batchSize);
+        registerRequestProcessor(server, new AtomicBoolean(false), req -> {
+            if (req.isOneway()) received.countDown();
+        });
+
+        server.start();
+        assertTrue(client.connect("", randomString()).success());
+
+        CountDownLatch sent = new CountDownLatch(batches);
+        for (int i = 0; i < batches; i++) {
+            List<RemotingCommand> requests = new ArrayList<>(batchSize);
+            for (int j = 0; j < batchSize; j++) {
+                requests.add(RemotingCommand.request(1024, Any.pack(randomString()), Map.of("seq", String.valueOf(j))));
+            }
+            client.invokeOnewayBatch(requests, 200, callbackVoid(sent));
+        }
+
+        assertTrue(sent.await(3, TimeUnit.SECONDS));
+        assertTrue(received.await(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stream() throws Exception {
+        String login = randomString();
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        NettyRemotingClient client = newClient(new NettyClientConfig());
+
+        // 超过 frameMaxLength
+        byte[] content = new byte[20 * 1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(content);
+        CRC32 expected = new CRC32();
+        expected.update(content);
+
+        registerStreamProcessor(server);
+        registerStreamProcessor(client);
+        server.start();
+        assertTrue(client.connect("", login).success());
+
+        RemotingCommand response = invokeStream(r -> client.invokeStream(RemotingCommand.request(2048, Any.pack("snapshot")), new ChunkedStream(new ByteArrayInputStream(content), 64 * 1024), 10000, r));
+        assertTrue(response.success());
+        assertEquals(content.length + ":" + expected.getValue(), Any.unpack(response.getBody(), String.class));
+
+        // 服务端也可以向客户端发送
+        response = invokeStream(r -> server.invokeStream(login, RemotingCommand.request(2048, Any.pack("snapshot")), new ChunkedStream(new ByteArrayInputStream(content, 0, 1000), 64), 3000, r));
+        assertTrue(response.success());
+
+        // 对端没有对应的处理器
+        RemotingCommand failure = invokeStream(r -> client.invokeStream(RemotingCommand.request(2049, null), new ChunkedStream(new ByteArrayInputStream(content), 64 * 1024), 3000, r));
+        assertEquals(RemotingSystemCode.REQUEST_CODE_NOT_SUPPORTED, failure.getCode());
+    }
+
+    private RemotingCommand invokeStream(Consumer<ResultCallback<RemotingCommand>> invoker) throws Exception {
+        CompletableFuture<RemotingCommand> future = new CompletableFuture<>();
+        invoker.accept(new ResultCallback<>() {
+            @Override
+            public void onSuccess(RemotingCommand response) {
+                response.getBody();
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(ErrorInfo error) {
+                future.complete(RemotingCommand.failure(error.getReqId(), error.getErrorCode(), error.getErrorDesc()));
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private void registerStreamProcessor(RemotingProcessable processable) {
+        processable.registerStreamProcessor(2048, Executors.newFixedThreadPool(2), (ctx, header) -> {
+            assertEquals("snapshot", header.unpack(String.class));
+            CRC32 crc32 = new CRC32();
+            AtomicLong length = new AtomicLong();
+            return new StreamReceiver() {
+                @Override
+                public void onChunk(ByteBuf chunk) {
+                    length.addAndGet(chunk.readableBytes());
+                    crc32.update(chunk.nioBuffer());
+                }
+
+                @Override
+                public RemotingCommand onComplete() {
+                    return RemotingCommand.success(0, Any.pack(length.get() + ":" + crc32.getValue()), null);
+                }
+            };
+        });
+    }
+
     @Test
     public void callClient() throws Exception {
         String login = "no-today";
 
-        NettyRemotingServer server = new NettyRemotingServer(new NettyServerConfig());
-        NettyRemotingClient client = new NettyRemotingClient(new NettyClientConfig());
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        NettyRemotingClient client = newClient(new NettyClientConfig());
 
         AtomicInteger requestCounter = new AtomicInteger(0);
         AtomicInteger onewayCounter = new AtomicInteger(0);
@@ -200,8 +351,436 @@ public class NettyRemotingServerTest {
 
         assertEquals(count, onewayCounter.get());
         assertEquals(count * 3, requestCounter.get());
+    }
+
+    @Test
+    public void sharedClientResources() throws Exception {
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        registerRequestProcessor(server, new AtomicBoolean(false), null);
+        server.start();
+
+        NettyClientResources resources = new NettyClientResources(new NettyClientConfig(), 2);
+        this.shutdownHooks.push(() -> {
+            if (resources.refCnt() > 0) resources.release(resources.refCnt());
+        });
+        NettyRemotingClient a = newClient(new NettyClientConfig(), null, resources);
+        NettyRemotingClient b = newClient(new NettyClientConfig(), null, resources);
+        resources.release();
+        assertEquals(2, resources.refCnt());
+
+        assertTrue(a.connect("", randomString()).success());
+        assertTrue(b.connect("", randomString()).success());
+        // 回调执行器组同样共享
+        assertSame(a.getCallbackStripes(), b.getCallbackStripes());
+
+        // 一个客户端关闭不影响另一个
+        a.shutdown();
+        a.shutdown();
+        assertEquals(1, resources.refCnt());
+        assertTrue(b.invokeSync(RemotingCommand.request(0, null, null), 1000).success());
+
+        b.shutdown();
+        assertEquals(0, resources.refCnt());
+        assertTrue(resources.callbackExecutor().isShutdown());
+    }
+
+    @Test
+    public void virtualThreadsFallback() throws Exception {
+        assumeTrue(Runtime.version().feature() < 21);
+
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setVirtualThreads(true);
+        NettyRemotingServer server = newServer(serverConfig);
+        List<String> threads = new ArrayList<>();
+        registerRequestProcessor(server, new AtomicBoolean(false), request -> threads.add(Thread.currentThread().getName()));
+        server.start();
 
-        client.shutdown();
+        NettyClientConfig clientConfig = new NettyClientConfig();
+        clientConfig.setVirtualThreads(true);
+        NettyRemotingClient client = newClient(clientConfig);
+        assertNull(client.getVirtualThreadExecutor());
+        assertTrue(client.connect("", randomString()).success());
+
+        // 低版本 JDK 使用注册处理器时指定的线程池
+        assertTrue(client.invokeSync(RemotingCommand.request(1024, null, null), 1000).success());
+        assertEquals(1, threads.size());
+        assertTrue(threads.get(0).startsWith("pool-"));
+    }
+
+    @Test
+    public void virtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21);
+
+        String login = randomString();
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setVirtualThreads(true);
+        NettyRemotingServer server = newServer(serverConfig);
+        List<Boolean> virtual = new CopyOnWriteArrayList<>();
+        server.registerDefaultProcessor(Executors.newSingleThreadExecutor(), new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) throws Exception {
+                virtual.add(isVirtual(Thread.currentThread()));
+                // 在虚拟线程中同步调用客户端
+                assertTrue(server.invokeSync(login, RemotingCommand.request(1024, null, null), 1000).success());
+                return request.setCode(0);
+            }
+        });
+        server.start();
+
+        NettyClientConfig clientConfig = new NettyClientConfig();
+        clientConfig.setVirtualThreads(true);
+        NettyRemotingClient client = newClient(clientConfig);
+        registerRequestProcessor(client, new AtomicBoolean(false), request -> virtual.add(isVirtual(Thread.currentThread())));
+        assertTrue(client.connect("", login).success());
+
+        assertTrue(client.invokeSync(RemotingCommand.request(1024, null, null), 2000).success());
+        assertEquals(List.of(true, true), virtual);
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void orderedDispatch() throws Exception {
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        int count = 2000;
+        serverConfig.setOrderedDispatch(true);
+        serverConfig.setOrderedDispatchQueueSize(count);
+        NettyRemotingServer server = newServer(serverConfig);
+
+        List<Integer> received = new ArrayList<>(count);
+        CountDownLatch cd = new CountDownLatch(count);
+        server.registerDefaultProcessor(Executors.newFixedThreadPool(8), new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+                // 串行执行, 不需要同步
+                received.add(Integer.parseInt(request.getExtFields().get("seq")));
+                cd.countDown();
+                return null;
+            }
+        });
+        server.start();
+
+        NettyRemotingClient client = newClient(new NettyClientConfig());
+        assertTrue(client.connect("", randomString()).success());
+
+        for (int i = 0; i < count; i++) {
+            client.invokeOneway(RemotingCommand.request(1024, null, Map.of("seq", String.valueOf(i))), 1000, callbackVoid(new CountDownLatch(1)));
+        }
+
+        assertTrue(cd.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void inlineProcessor() throws Exception {
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        registerRequestProcessor(server, new AtomicBoolean(false), null);
+
+        // 内联执行只能显式注册
+        assertThrows(IllegalArgumentException.class, () -> server.registerProcessor(4096, null, (ctx, request) -> request));
+        assertThrows(IllegalArgumentException.class, () -> server.registerDefaultProcessor(null, (ctx, request) -> request));
+
+        List<String> threads = new ArrayList<>();
+        server.registerInlineProcessor(4096, new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+                threads.add(Thread.currentThread().getName());
+                return RemotingCommand.success(request.getReqId(), Any.pack("pong"), null);
+            }
+        });
+        server.start();
+
+        NettyRemotingClient client = newClient(new NettyClientConfig());
+        assertTrue(client.connect("", randomString()).success());
+
+        RemotingCommand response = client.invokeSync(RemotingCommand.request(4096, null), 1000);
+        assertTrue(response.success());
+        assertEquals("pong", response.unpack(String.class));
+
+        // 在 pipeline 线程中执行, 而不是处理器线程池
+        assertEquals(1, threads.size());
+        assertTrue(threads.get(0), threads.get(0).startsWith("NettyServerCodecThread"));
+    }
+
+    @Test
+    public void codecOnEventLoop() throws Exception {
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setCodecOnEventLoop(true);
+        NettyClientConfig clientConfig = new NettyClientConfig();
+        clientConfig.setCodecOnEventLoop(true);
+
+        // 编解码与分发都在 EventLoop 中, 内联处理器运行在 Selector 线程
+        String thread = roundTrip(serverConfig, clientConfig);
+        assertTrue(thread, thread.startsWith("NettyServer") && thread.contains("Selector"));
+    }
+
+    @Test
+    public void ioUringFallback() throws Exception {
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setUseIoUring(true);
+        // 内联处理器运行在 Selector 线程, 线程名带有实际使用的传输实现
+        serverConfig.setCodecOnEventLoop(true);
+        NettyClientConfig clientConfig = new NettyClientConfig();
+        clientConfig.setUseIoUring(true);
+
+        // 没有 native 包时回退到 epoll / NIO, 调用不受影响
+        String thread = roundTrip(serverConfig, clientConfig);
+        String transport = NettyTransport.select(true, true).displayName;
+        assertTrue(thread, thread.startsWith("NettyServer" + transport + "Selector"));
+    }
+
+    /**
+     * 同步、异步、单向各调用一次, 返回服务端内联处理器所在的线程名
+     */
+    private String roundTrip(NettyServerConfig serverConfig, NettyClientConfig clientConfig) throws Exception {
+        NettyRemotingServer server = newServer(serverConfig);
+        AtomicInteger oneway = new AtomicInteger();
+        registerRequestProcessor(server, new AtomicBoolean(false), request -> {
+            if (request.isOneway()) oneway.incrementAndGet();
+        });
+        List<String> threads = new CopyOnWriteArrayList<>();
+        server.registerInlineProcessor(4096, (ctx, request) -> {
+            threads.add(Thread.currentThread().getName());
+            return RemotingCommand.success(request.getReqId(), Any.pack("pong"), null);
+        });
+        server.start();
+
+        NettyRemotingClient client = newClient(clientConfig);
+        assertTrue(client.connect("", randomString()).success());
+
+        assertEquals("pong", client.invokeSync(RemotingCommand.request(4096, null), 1000).unpack(String.class));
+        assertTrue(client.invokeAsync(RemotingCommand.request(1024, Any.pack(randomString())), 1000).get(1, TimeUnit.SECONDS).success());
+        client.invokeOneway(RemotingCommand.request(1024, Any.pack(randomString())), 1000, callbackVoid(new CountDownLatch(1)));
+        await(() -> oneway.get() == 1, 1000);
+        assertEquals(1, oneway.get());
+
+        assertEquals(1, threads.size());
+        return threads.get(0);
+    }
+
+    @Test
+    public void callbackModes() throws Exception {
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        registerRequestProcessor(server, new AtomicBoolean(false), null);
+        server.start();
+
+        for (CallbackMode mode : CallbackMode.values()) {
+            NettyClientConfig config = new NettyClientConfig();
+            config.setCallbackMode(mode);
+            NettyRemotingClient client = newClient(config);
+            assertTrue(client.connect("", randomString()).success());
+
+            int count = 1000;
+            CountDownLatch cd = new CountDownLatch(count);
+            for (int i = 0; i < count; i++) {
+                client.invokeAsync(RemotingCommand.request(1024, Any.pack(randomString())), 3000, callback(cd));
+            }
+            assertTrue(mode.name(), cd.await(5, TimeUnit.SECONDS));
+
+            // 信号量在回调执行后释放
+            await(() -> client.semaphoreAsync.availablePermits() == config.getAsyncSemaphoreValue(), 1000);
+            assertEquals(mode.name(), config.getAsyncSemaphoreValue(), client.semaphoreAsync.availablePermits());
+
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void failingBeforeHook() throws Exception {
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        registerRequestProcessor(server, new AtomicBoolean(false), null);
+        registerStreamProcessor(server);
+        server.start();
+
+        NettyClientConfig config = new NettyClientConfig();
+        NettyRemotingClient client = newClient(config);
+        assertTrue(client.connect("", randomString()).success());
+        client.registerRPCHook(new RPCHook() {
+            @Override
+            public void doBeforeRequest(String login, RemotingCommand request) {
+                throw new IllegalStateException("hook failed");
+            }
+
+            @Override
+            public void doAfterResponse(String login, RemotingCommand request, RemotingCommand response) {
+            }
+        });
+
+        AtomicInteger asyncFailures = new AtomicInteger();
+        AtomicInteger streamFailures = new AtomicInteger();
+        client.invokeAsync(RemotingCommand.request(1024, null), 50, countFailures(asyncFailures));
+        client.invokeStream(RemotingCommand.request(2048, Any.pack("snapshot")), new ChunkedStream(new ByteArrayInputStream(new byte[16])), 50, countFailures(streamFailures));
+        CompletableFuture<RemotingCommand> future = client.invokeAsync(RemotingCommand.request(1024, null), 50);
+
+        assertEquals(1, asyncFailures.get());
+        assertEquals(1, streamFailures.get());
+        assertTrue(future.isCompletedExceptionally());
+
+        // 超时到期后不会再次回调
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals(1, asyncFailures.get());
+        assertEquals(1, streamFailures.get());
+        assertEquals(config.getAsyncSemaphoreValue(), client.semaphoreAsync.availablePermits());
+    }
+
+    private static ResultCallback<RemotingCommand> countFailures(AtomicInteger failures) {
+        return new ResultCallback<>() {
+            @Override
+            public void onSuccess(RemotingCommand response) {
+                throw new AssertionError("unexpected response");
+            }
+
+            @Override
+            public void onFailure(ErrorInfo error) {
+                failures.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void asyncTimeout() throws Exception {
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        registerRequestProcessor(server, new AtomicBoolean(false), request -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(500);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        server.start();
+
+        NettyRemotingClient client = newClient(new NettyClientConfig());
+        assertTrue(client.connect("", randomString()).success());
+
+        CompletableFuture<ErrorInfo> failure = new CompletableFuture<>();
+        long begin = System.nanoTime();
+        client.invokeAsync(RemotingCommand.request(1024, Any.pack(randomString())), 50, new ResultCallback<>() {
+            @Override
+            public void onSuccess(RemotingCommand response) {
+                failure.completeExceptionally(new AssertionError("unexpected response"));
+            }
+
+            @Override
+            public void onFailure(ErrorInfo error) {
+                failure.complete(error);
+            }
+        });
+
+        // 由时间轮按请求自身的超时触发, 不再等待整秒的扫描
+        assertEquals(-2, failure.get(1, TimeUnit.SECONDS).getErrorCode());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) < 400);
+    }
+
+    @Test
+    public void connectionLost() throws Exception {
+        NettyRemotingServer server = newServer(new NettyServerConfig());
+        int count = 100;
+        // 不回复响应, 所有请求都停留在客户端的响应表中
+        CountDownLatch arrived = new CountDownLatch(count + 1);
+        server.registerDefaultProcessor(Executors.newSingleThreadExecutor(), new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+                arrived.countDown();
+                return null;
+            }
+        });
+        server.start();
+
+        NettyClientConfig config = new NettyClientConfig();
+        NettyRemotingClient client = newClient(config);
+        assertTrue(client.connect("", randomString()).success());
+
+        CountDownLatch cd = new CountDownLatch(count);
+        AtomicInteger connectionLost = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            client.invokeAsync(RemotingCommand.request(1024, Any.pack(randomString())), 10000, new ResultCallback<>() {
+                @Override
+                public void onSuccess(RemotingCommand response) {
+                    cd.countDown();
+                }
+
+                @Override
+                public void onFailure(ErrorInfo error) {
+                    if (error.getErrorCode() == RemotingSystemCode.REQUEST_FAILED) connectionLost.incrementAndGet();
+                    cd.countDown();
+                }
+            });
+        }
+
+        CompletableFuture<Throwable> sync = CompletableFuture.supplyAsync(() -> {
+            try {
+                client.invokeSync(RemotingCommand.request(1024, Any.pack(randomString())), 10000);
+                return null;
+            } catch (Throwable e) {
+                return e;
+            }
+        });
+
+        assertTrue(arrived.await(2, TimeUnit.SECONDS));
         server.shutdown();
+
+        // 连接断开立即失败, 不等待 10s 的超时
+        assertTrue(cd.await(2, TimeUnit.SECONDS));
+        assertEquals(count, connectionLost.get());
+        assertTrue(sync.get(2, TimeUnit.SECONDS) instanceof RemotingConnectException);
+
+        await(() -> client.semaphoreAsync.availablePermits() == config.getAsyncSemaphoreValue(), 1000);
+        assertEquals(config.getAsyncSemaphoreValue(), client.semaphoreAsync.availablePermits());
+    }
+
+    @Test
+    public void completableFuture() throws Exception {
+        // 同一连接按顺序处理, 后发请求的响应一定在被取消请求的响应之后到达
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setOrderedDispatch(true);
+        NettyRemotingServer server = newServer(serverConfig);
+        registerRequestProcessor(server, new AtomicBoolean(false), request -> {
+            if ("slow".equals(request.unpack(String.class))) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(500);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        server.start();
+
+        NettyClientConfig config = new NettyClientConfig();
+        NettyRemotingClient client = newClient(config);
+        assertTrue(client.connect("", randomString()).success());
+
+        // 组合多个调用
+        String a = randomString();
+        String b = randomString();
+        String joined = client.invokeAsync(RemotingCommand.request(1024, Any.pack(a)), 3000)
+                .thenCombine(client.invokeAsync(RemotingCommand.request(1024, Any.pack(b)), 3000),
+                        (ra, rb) -> ra.unpack(String.class) + rb.unpack(String.class))
+                .get(3, TimeUnit.SECONDS);
+        assertEquals(a + b, joined);
+
+        // 超时
+        CompletableFuture<RemotingCommand> timeout = client.invokeAsync(RemotingCommand.request(1024, Any.pack("slow")), 50);
+        try {
+            timeout.get(3, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RemotingTimeoutException);
+        }
+
+        // 取消后移除请求并释放信号量
+        CompletableFuture<RemotingCommand> cancelled = client.invokeAsync(RemotingCommand.request(1024, Any.pack("slow")), 3000);
+        assertTrue(cancelled.cancel(false));
+        assertEquals(config.getAsyncSemaphoreValue(), client.semaphoreAsync.availablePermits());
+
+        // 被取消请求的响应到达后被丢弃, 不会重复释放信号量
+        assertTrue(client.invokeAsync(RemotingCommand.request(1024, Any.pack(randomString())), 3000).get(3, TimeUnit.SECONDS).success());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(config.getAsyncSemaphoreValue(), client.semaphoreAsync.availablePermits());
     }
 }
@@ -0,0 +1,60 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.common.RemotingUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.incubator.channel.uring.IOUring;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author no-today
+ * @date 2023/10/22 17:10
+ */
+public class NettyTransportTest {
+
+    private static final NettyTransport EPOLL_OR_NIO = RemotingUtil.isLinuxPlatform() && Epoll.isAvailable() ? NettyTransport.EPOLL : NettyTransport.NIO;
+
+    @Test
+    public void select() {
+        assertEquals(NettyTransport.NIO, NettyTransport.select(false, false));
+        assertEquals(EPOLL_OR_NIO, NettyTransport.select(false, true));
+
+        // io_uring 不可用时按 epoll > NIO 回退, 仍然遵守 useEpoll
+        boolean ioUring = RemotingUtil.isLinuxPlatform() && IOUring.isAvailable();
+        assertEquals(ioUring ? NettyTransport.IO_URING : EPOLL_OR_NIO, NettyTransport.select(true, true));
+        assertEquals(ioUring ? NettyTransport.IO_URING : NettyTransport.NIO, NettyTransport.select(true, false));
+    }
+
+    @Test
+    public void eventLoopGroup() throws Exception {
+        assertUsable(NettyTransport.select(false, false));
+        assertUsable(NettyTransport.select(false, true));
+        assertUsable(NettyTransport.select(true, true));
+    }
+
+    /**
+     * EventLoop 的线程名符合约定, 且 channel 类型与 EventLoop 匹配
+     */
+    static void assertUsable(NettyTransport transport) throws Exception {
+        EventLoopGroup group = transport.newEventLoopGroup(1, "Test", "Selector");
+        try {
+            String thread = group.next().submit(() -> Thread.currentThread().getName()).get();
+            assertTrue(thread, thread.startsWith("Test" + transport.displayName + "Selector"));
+
+            Channel channel = transport.channelClass().getDeclaredConstructor().newInstance();
+            group.register(channel).sync();
+            channel.close().sync();
+
+            Channel serverChannel = transport.serverChannelClass().getDeclaredConstructor().newInstance();
+            group.register(serverChannel).sync();
+            serverChannel.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+}
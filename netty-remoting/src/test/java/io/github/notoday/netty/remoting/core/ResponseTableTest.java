@@ -0,0 +1,82 @@
+package io.github.notoday.netty.remoting.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author no-today
+ * @date 2023/10/21 15:00
+ */
+public class ResponseTableTest {
+
+    @Test
+    public void matchesHashMap() {
+        // 段少、初始容量小, 覆盖冲突、扩容与回移
+        ResponseTable table = new ResponseTable(2, 4);
+        Map<Integer, ResponseFuture> expected = new HashMap<>();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(-2000, 2000);
+            if (random.nextBoolean()) {
+                ResponseFuture future = new ResponseFuture(null, key, 1000);
+                assertSame(expected.put(key, future), table.put(key, future));
+            } else {
+                assertSame(expected.remove(key), table.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (int key = -2000; key < 2000; key++) {
+            assertSame(expected.get(key), table.get(key));
+        }
+    }
+
+    @Test
+    public void expire() {
+        ResponseTable table = new ResponseTable();
+        for (int i = 0; i < 1000; i++) {
+            // 奇数已经超时
+            table.put(i, new ResponseFuture(null, i, i % 2 == 0 ? 60000 : 0));
+        }
+
+        List<ResponseFuture> expired = new ArrayList<>();
+        table.expire(System.nanoTime(), expired);
+
+        assertEquals(500, expired.size());
+        assertEquals(500, table.size());
+        for (ResponseFuture future : expired) {
+            assertEquals(1, future.getReqId() % 2);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertNotNull(table.get(i));
+        }
+
+        List<ResponseFuture> removed = new ArrayList<>();
+        table.clear(removed);
+        assertEquals(500, removed.size());
+        assertTrue(table.isEmpty());
+    }
+
+    @Test
+    public void nextReqId() {
+        ResponseTable table = new ResponseTable(2, 4);
+        assertEquals(1, table.nextReqId());
+        assertEquals(2, table.nextReqId());
+
+        // 回绕后跳过 0 与仍在等待响应的 reqId
+        table.put(1, new ResponseFuture(null, 1, 1000));
+        table.put(3, new ResponseFuture(null, 3, 1000));
+        table.sequence.set(Integer.MAX_VALUE - 1);
+        assertEquals(Integer.MAX_VALUE, table.nextReqId());
+        assertEquals(2, table.nextReqId());
+        assertEquals(4, table.nextReqId());
+    }
+}
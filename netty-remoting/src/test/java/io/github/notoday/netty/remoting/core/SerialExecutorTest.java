@@ -0,0 +1,83 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author no-today
+ * @date 2023/10/20 17:30
+ */
+public class SerialExecutorTest {
+
+    @Test
+    public void queueFull() {
+        Deque<Runnable> submitted = new ArrayDeque<>();
+        SerialExecutor executor = SerialExecutor.of(new EmbeddedChannel(), submitted::add, 2);
+        List<Integer> executed = new ArrayList<>();
+
+        executor.execute(() -> executed.add(1));
+        executor.execute(() -> executed.add(2));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> executed.add(3)));
+
+        // 只提交了一次消费, 按提交顺序执行
+        assertEquals(1, submitted.size());
+        submitted.poll().run();
+        assertEquals(List.of(1, 2), executed);
+
+        executor.execute(() -> executed.add(4));
+        submitted.poll().run();
+        assertEquals(List.of(1, 2, 4), executed);
+    }
+
+    @Test
+    public void delegateRejected() {
+        Thread submitter = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+        SerialExecutor executor = SerialExecutor.of(new EmbeddedChannel(), task -> {
+            throw new RejectedExecutionException("busy");
+        }, 16);
+
+        // 不在提交线程中执行
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> threads.add(Thread.currentThread())));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> threads.add(Thread.currentThread())));
+        assertFalse(threads.contains(submitter));
+        assertTrue(threads.isEmpty());
+    }
+
+    @Test
+    public void rescheduleRejected() {
+        // 第一次提交成功, 之后让出线程时被拒绝
+        Deque<Runnable> submitted = new ArrayDeque<>();
+        AtomicBoolean busy = new AtomicBoolean();
+        Executor delegate = task -> {
+            if (busy.get()) throw new RejectedExecutionException("busy");
+            submitted.add(task);
+        };
+        SerialExecutor executor = SerialExecutor.of(new EmbeddedChannel(), delegate, 1024);
+
+        List<Integer> executed = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int seq = i;
+            executor.execute(() -> executed.add(seq));
+        }
+        busy.set(true);
+
+        // 在消费线程中继续执行完, 不递归
+        submitted.poll().run();
+        assertEquals(200, executed.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+        assertTrue(submitted.isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.notoday.netty.remoting.core;
+
+import io.github.notoday.netty.remoting.config.NettyClientConfig;
+import io.github.notoday.netty.remoting.config.NettyServerConfig;
+import io.netty.util.HashedWheelTimer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author no-today
+ * @date 2023/10/22 11:00
+ */
+public class TimeoutTimersTest {
+
+    @Test
+    public void shared() {
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        NettyRemotingServer server = new NettyRemotingServer(serverConfig);
+        NettyClientResources resources = new NettyClientResources(new NettyClientConfig());
+
+        // 刻度相同, 服务端与客户端共用一个时间轮
+        assertSame(server.getTimeoutTimer(), resources.timeoutTimer());
+
+        server.shutdown();
+        server.shutdown();
+        HashedWheelTimer timer = (HashedWheelTimer) resources.timeoutTimer();
+        assertNotNull(timer.newTimeout(timeout -> {
+        }, 1, TimeUnit.SECONDS));
+
+        // 最后一个使用者释放后停止
+        resources.release();
+        assertThrows(IllegalStateException.class, () -> timer.newTimeout(timeout -> {
+        }, 1, TimeUnit.SECONDS));
+        assertNotSame(timer, TimeoutTimers.acquire(serverConfig.getTimeoutTickMillis()));
+        TimeoutTimers.release(serverConfig.getTimeoutTickMillis());
+    }
+}
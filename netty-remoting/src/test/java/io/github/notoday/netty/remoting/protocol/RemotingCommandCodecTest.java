@@ -0,0 +1,570 @@
+package io.github.notoday.netty.remoting.protocol;
+
+import io.github.notoday.netty.remoting.common.RemotingSystemCode;
+import io.github.notoday.netty.remoting.compression.CompressorTable;
+import io.github.notoday.netty.remoting.compression.DeflateCompressor;
+import io.github.notoday.netty.remoting.compression.SnappyCompressor;
+import io.github.notoday.netty.remoting.exception.RemotingRuntimeException;
+import io.github.notoday.netty.remoting.security.AuthenticationToken;
+import io.github.notoday.netty.remoting.serializer.JsonSerializer;
+import io.github.notoday.netty.remoting.serializer.JsonbSerializer;
+import io.github.notoday.netty.remoting.serializer.RawSerializer;
+import io.github.notoday.netty.remoting.serializer.Serializer;
+import io.github.notoday.netty.remoting.serializer.SerializerTable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author no-today
+ * @date 2023/10/09 11:20
+ */
+public class RemotingCommandCodecTest {
+
+    private static final int HEADER_LENGTH = 4 + 4 + 1 + 4 + 1 + 1 + 1 + 4 + 4 + 4 + 4;
+
+    private RemotingCommand roundTrip(RemotingCommand command) {
+        return roundTrip(command, SerializerTable.DEFAULT);
+    }
+
+    private RemotingCommand roundTrip(RemotingCommand command, SerializerTable serializerTable) {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(serializerTable, CompressorTable.DEFAULT), new NettyEncoder());
+        assertTrue(channel.writeOutbound(command));
+
+        ByteBuf frame = channel.readOutbound();
+        assertTrue(channel.writeInbound(frame));
+
+        RemotingCommand decoded = channel.readInbound();
+        assertFalse(channel.finish());
+        return decoded;
+    }
+
+    @Test
+    public void request() {
+        RemotingCommand request = RemotingCommand.request((byte) 1, 1024, "hello 世界".getBytes(StandardCharsets.UTF_8), Map.of("traceId", "abc", "空", ""));
+        RemotingCommand decoded = roundTrip(request);
+
+        assertEquals(request, decoded);
+        assertTrue(decoded.release());
+    }
+
+    @Test
+    public void nullFields() {
+        RemotingCommand request = RemotingCommand.request(1024, null);
+        RemotingCommand decoded = roundTrip(request);
+
+        assertEquals(request, decoded);
+        assertNull(decoded.getBody());
+        assertNull(decoded.getMessage());
+        assertNull(decoded.getExtFields());
+    }
+
+    @Test
+    public void emptyBody() {
+        RemotingCommand request = RemotingCommand.request(1024, new byte[0]);
+        assertArrayEquals(new byte[0], roundTrip(request).getBody());
+    }
+
+    @Test
+    public void failure() {
+        RemotingCommand response = RemotingCommand.failure(7, RemotingSystemCode.SYSTEM_BUSY, "[OVERLOAD] system busy, try later");
+        RemotingCommand decoded = roundTrip(response);
+
+        assertEquals(response, decoded);
+        assertTrue(decoded.isResponse());
+        assertFalse(decoded.success());
+    }
+
+    @Test
+    public void forgedExtFieldsSize() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(), new NettyEncoder());
+        channel.writeOutbound(RemotingCommand.request(1024, null, Map.of("k", "v")));
+        ByteBuf frame = channel.readOutbound();
+
+        // extFields: size=1, "k"(length=1), "v"(length=1); 把条数改成 Integer.MAX_VALUE
+        byte[] pattern = {0, 0, 0, 1, 0, 0, 0, 1, 'k', 0, 0, 0, 1, 'v'};
+        int index = ByteBufUtil.indexOf(Unpooled.wrappedBuffer(pattern), frame);
+        assertTrue(index > 0);
+        frame.setInt(index, Integer.MAX_VALUE);
+
+        // 按剩余字节拒绝, 而不是按条数预分配
+        assertThrows(DecoderException.class, () -> channel.writeInbound(frame));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void inboundBodyIsRetainedSlice() {
+        RemotingCommand decoded = roundTrip(RemotingCommand.request(1024, new byte[]{1, 2, 3}));
+
+        ByteBuf bodyBuffer = decoded.getBodyBuffer();
+        assertNotNull(bodyBuffer);
+        assertEquals(3, decoded.getBodyLength());
+        assertEquals(1, bodyBuffer.refCnt());
+
+        // 转为堆内存后释放, 内容依然可用
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.getBody());
+        assertTrue(decoded.release());
+        assertEquals(0, bodyBuffer.refCnt());
+        assertNull(decoded.getBodyBuffer());
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.getBody());
+    }
+
+    @Test
+    public void outboundBodyBufferIsNotCopied() {
+        CompositeByteBuf body = Unpooled.compositeBuffer();
+        body.addComponents(true, Unpooled.wrappedBuffer(new byte[]{1, 2}), Unpooled.wrappedBuffer(new byte[]{3}));
+
+        RemotingCommand request = RemotingCommand.request(1024, null).setBodyBuffer(body);
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(), new NettyEncoder());
+        assertTrue(channel.writeOutbound(request));
+
+        CompositeByteBuf frame = channel.readOutbound();
+        assertEquals(2, frame.numComponents());
+        assertEquals(body.readableBytes(), frame.component(1).readableBytes());
+        // 出站缓冲持有一份, 指令自身持有一份
+        assertEquals(2, body.refCnt());
+
+        assertTrue(channel.writeInbound(frame));
+        RemotingCommand decoded = channel.readInbound();
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.getBody());
+        assertTrue(decoded.release());
+
+        assertEquals(1, body.refCnt());
+        assertTrue(request.release());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void serializer() {
+        AuthenticationToken token = new AuthenticationToken().setLogin("no-today").setToken("世界");
+
+        RemotingCommand jsonb = roundTrip(RemotingCommand.request(1024, null).pack(SerializerTable.JSONB, token));
+        assertEquals(JsonbSerializer.ID, jsonb.getSerializerId());
+        assertEquals(token, jsonb.unpack(AuthenticationToken.class));
+        jsonb.release();
+
+        // 默认 JSON, 与 Any 兼容
+        RemotingCommand json = roundTrip(RemotingCommand.request(1024, Any.pack(token)));
+        assertEquals(JsonSerializer.ID, json.getSerializerId());
+        assertEquals(token, json.unpack(AuthenticationToken.class));
+        json.release();
+
+        RemotingCommand raw = roundTrip(RemotingCommand.request(1024, null).pack(SerializerTable.RAW, "raw"));
+        assertEquals("raw", raw.unpack(String.class));
+        raw.release();
+    }
+
+    @Test
+    public void customSerializer() {
+        Serializer reversed = new Serializer() {
+            @Override
+            public byte getId() {
+                return 100;
+            }
+
+            @Override
+            public byte[] serialize(Object obj) {
+                return new StringBuilder((String) obj).reverse().toString().getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+                return clazz.cast(new StringBuilder(new String(bytes, StandardCharsets.UTF_8)).reverse().toString());
+            }
+        };
+
+        SerializerTable serializerTable = new SerializerTable();
+        serializerTable.register(reversed);
+
+        RemotingCommand request = RemotingCommand.request(1024, null).pack(reversed, "hello");
+        RemotingCommand decoded = roundTrip(request, serializerTable);
+        assertEquals("hello", decoded.unpack(String.class));
+        decoded.release();
+
+        // 对端未注册
+        RemotingCommand unknown = roundTrip(request);
+        assertThrows(RemotingRuntimeException.class, () -> unknown.unpack(String.class));
+        unknown.release();
+    }
+
+    @Test
+    public void compression() {
+        byte[] body = "{\"login\":\"no-today\",\"token\":\"abc\"}".repeat(1024).getBytes(StandardCharsets.UTF_8);
+
+        for (byte compressionType : new byte[]{DeflateCompressor.ID, SnappyCompressor.ID}) {
+            EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(), new NettyEncoder(CompressorTable.DEFAULT, compressionType, 1024));
+            channel.writeOutbound(RemotingCommand.request(1024, body));
+
+            ByteBuf frame = channel.readOutbound();
+            assertTrue(frame.readableBytes() * 3 < body.length);
+
+            channel.writeInbound(frame);
+            RemotingCommand decoded = channel.readInbound();
+            assertArrayEquals(body, decoded.getBody());
+            assertTrue(decoded.release());
+            assertFalse(channel.finish());
+        }
+    }
+
+    @Test
+    public void compressionLargeBody() {
+        // 超过 64KB, Snappy 需要分块压缩
+        StringBuilder text = new StringBuilder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (text.length() < 200 * 1024) {
+            text.append("{\"seq\":").append(random.nextInt(1000)).append(",\"login\":\"no-today\"}");
+        }
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (byte compressionType : new byte[]{DeflateCompressor.ID, SnappyCompressor.ID}) {
+            EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(), new NettyEncoder(CompressorTable.DEFAULT, compressionType, 1024));
+            channel.writeOutbound(RemotingCommand.request(1024, body));
+
+            ByteBuf frame = channel.readOutbound();
+            assertTrue(frame.readableBytes() < body.length);
+
+            channel.writeInbound(frame);
+            RemotingCommand decoded = channel.readInbound();
+            assertArrayEquals(body, decoded.getBody());
+            assertTrue(decoded.release());
+            assertFalse(channel.finish());
+        }
+    }
+
+    @Test
+    public void compressionSkipped() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(), new NettyEncoder(CompressorTable.DEFAULT, DeflateCompressor.ID, 1024));
+
+        // 小于阈值
+        byte[] small = new byte[1023];
+        channel.writeOutbound(RemotingCommand.request(1024, small));
+        ByteBuf frame = channel.readOutbound();
+        assertEquals(HEADER_LENGTH + small.length, frame.readableBytes());
+        frame.release();
+
+        // 压缩后没有变小
+        byte[] random = new byte[4096];
+        ThreadLocalRandom.current().nextBytes(random);
+        channel.writeOutbound(RemotingCommand.request(1024, random));
+        frame = channel.readOutbound();
+        assertEquals(HEADER_LENGTH + random.length, frame.readableBytes());
+
+        channel.writeInbound(frame);
+        RemotingCommand decoded = channel.readInbound();
+        assertArrayEquals(random, decoded.getBody());
+        decoded.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void batch() {
+        List<RemotingCommand> commands = List.of(
+                RemotingCommand.request(1024, "a".getBytes(StandardCharsets.UTF_8)).markOnewayRPC(),
+                RemotingCommand.request(1025, null, Map.of("traceId", "abc")).markOnewayRPC(),
+                RemotingCommand.request(1026, null).setBodyBuffer(Unpooled.wrappedBuffer(new byte[]{1, 2, 3})).markOnewayRPC()
+        );
+
+        RemotingCommand decoded = roundTrip(RemotingCommand.batch(ByteBufAllocator.DEFAULT, commands));
+        assertTrue(decoded.isBatch());
+
+        ByteBuf batch = decoded.getBodyBuffer();
+        List<RemotingCommand> unbatched = decoded.unbatch();
+        // 子指令仍持有批量 body
+        assertFalse(decoded.release());
+        assertEquals(commands.subList(0, 2), unbatched.subList(0, 2));
+        // 编码进批量指令后子指令的 bodyBuffer 已释放
+        assertNull(commands.get(2).getBodyBuffer());
+        assertEquals(1026, unbatched.get(2).getCode());
+        assertArrayEquals(new byte[]{1, 2, 3}, unbatched.get(2).getBody());
+
+        for (RemotingCommand command : unbatched) {
+            command.release();
+        }
+        assertEquals(0, batch.refCnt());
+        assertThrows(RemotingRuntimeException.class, unbatched.get(0)::unbatch);
+    }
+
+    @Test
+    public void headerTable() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(SerializerTable.DEFAULT, CompressorTable.DEFAULT, 64), new NettyEncoder());
+        HeaderTable.enable(channel, 64, true);
+
+        Map<String, String> extFields = Map.of("sw8", "1-" + "x".repeat(200), "route", "order-service", "空", "世界");
+        int[] frameLengths = new int[2];
+        for (int i = 0; i < frameLengths.length; i++) {
+            RemotingCommand request = RemotingCommand.request(1024, new byte[]{1}, extFields);
+            channel.writeOutbound(request);
+
+            ByteBuf frame = channel.readOutbound();
+            frameLengths[i] = frame.readableBytes();
+            channel.writeInbound(frame);
+
+            RemotingCommand decoded = channel.readInbound();
+            assertEquals(request, decoded);
+            decoded.release();
+        }
+
+        // 第二次只剩过长的 sw8 value 是字面量
+        assertEquals(HEADER_LENGTH + 1 + (1 + 2) * 5 + (1 + 4 + 202), frameLengths[1]);
+        assertTrue(frameLengths[1] < frameLengths[0]);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void headerTableEviction() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder(SerializerTable.DEFAULT, CompressorTable.DEFAULT, 64), new NettyEncoder());
+        // 发送方容量小于接收方, 只索引 key
+        HeaderTable.enable(channel, 2, false);
+
+        for (int i = 0; i < 20; i++) {
+            Map<String, String> extFields = new HashMap<>();
+            extFields.put("k" + (i % 3), "v" + i);
+            extFields.put("k" + (i % 5), null);
+            RemotingCommand request = RemotingCommand.request(1024, null, extFields);
+
+            channel.writeOutbound(request);
+            channel.writeInbound((ByteBuf) channel.readOutbound());
+            assertEquals(request, channel.readInbound());
+        }
+
+        // 对端未启用字典
+        EmbeddedChannel disabled = new EmbeddedChannel(new NettyDecoder(), new NettyEncoder());
+        HeaderTable.enable(disabled, 2, false);
+        disabled.writeOutbound(RemotingCommand.request(1024, null, Map.of("k", "v")));
+        assertThrows(DecoderException.class, () -> disabled.writeInbound((ByteBuf) disabled.readOutbound()));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void encodedLengthIsExact() {
+        RemotingCommand request = RemotingCommand.request((byte) 1, 1024, "hello 世界".getBytes(StandardCharsets.UTF_8), Map.of("traceId", "abc", "空", "\uD83D\uDE00"));
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyEncoder());
+        channel.writeOutbound(request);
+
+        ByteBuf frame = channel.readOutbound();
+        try {
+            assertEquals(RemotingCommandCodec.encodedLength(request), frame.readableBytes());
+            assertEquals(frame.readableBytes(), frame.capacity());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void encodeWithoutAllocation() {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        Map<String, String> extFields = new HashMap<>();
+        extFields.put("traceId", "4bf92f3577b34da6a3ce929d0e0e4736");
+        extFields.put("空", "世界");
+        RemotingCommand response = RemotingCommand.success(1024, new byte[256], extFields).setMessage("ok");
+
+        // 只统计编码本身, 缓冲分配由池化分配器负责
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(RemotingCommandCodec.encodedLength(response));
+        try {
+            int iterations = 200_000;
+            encode(buf, response, iterations);
+
+            long threadId = Thread.currentThread().getId();
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            encode(buf, response, iterations);
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+            assertTrue("allocated " + allocated + " bytes in " + iterations + " encodes", allocated < iterations);
+            assertEquals(buf.capacity(), buf.readableBytes());
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void encode(ByteBuf buf, RemotingCommand command, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            buf.clear();
+            RemotingCommandCodec.encode(command, buf);
+        }
+    }
+
+    @Test
+    public void bodyIsNotBase64() {
+        byte[] body = new byte[1024];
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyEncoder());
+        channel.writeOutbound(RemotingCommand.request(1024, body));
+
+        ByteBuf frame = channel.readOutbound();
+        try {
+            // magic + length + version + reqId + type + flag + serializer + code + message + extFields + bodyLength
+            assertEquals(HEADER_LENGTH + body.length, frame.readableBytes());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void fragmentation() {
+        EmbeddedChannel sender = new EmbeddedChannel(new FragmentWriteHandler(), new NettyEncoder(CompressorTable.DEFAULT, DeflateCompressor.ID, 1024, NettyEncoder.MIN_FRAGMENT_SIZE));
+        EmbeddedChannel receiver = new EmbeddedChannel(new NettyDecoder());
+
+        byte[] large = new byte[NettyEncoder.MIN_FRAGMENT_SIZE * 5];
+        ThreadLocalRandom.current().nextBytes(large);
+        // 可压缩, 压缩后仍需分片
+        byte[] compressible = new byte[NettyEncoder.MIN_FRAGMENT_SIZE * 20];
+        for (int i = 0; i < compressible.length; i++) {
+            compressible[i] = (byte) ThreadLocalRandom.current().nextInt(4);
+        }
+
+        sender.write(RemotingCommand.request(1, large));
+        sender.write(RemotingCommand.request(2, null).setBodyBuffer(Unpooled.wrappedBuffer(compressible)));
+        sender.write(RemotingCommand.request(3, "small".getBytes(StandardCharsets.UTF_8)));
+        sender.flush();
+
+        ByteBuf frame;
+        int frames = 0;
+        while ((frame = sender.readOutbound()) != null) {
+            assertTrue(frame.readableBytes() <= NettyEncoder.MIN_FRAGMENT_SIZE);
+            receiver.writeInbound(frame);
+            frames++;
+        }
+        assertTrue(frames > 5);
+
+        // 小指令不用等待大指令写完
+        RemotingCommand small = receiver.readInbound();
+        assertEquals(3, small.getCode());
+
+        RemotingCommand first = receiver.readInbound();
+        RemotingCommand second = receiver.readInbound();
+        RemotingCommand decodedLarge = first.getCode() == 1 ? first : second;
+        RemotingCommand decodedCompressible = first.getCode() == 1 ? second : first;
+        assertArrayEquals(large, decodedLarge.getBody());
+        assertArrayEquals(compressible, decodedCompressible.getBody());
+        small.release();
+        first.release();
+        second.release();
+
+        assertFalse(sender.finish());
+        assertFalse(receiver.finish());
+    }
+
+    @Test
+    public void fragmentationDiscardedOnClose() {
+        EmbeddedChannel sender = new EmbeddedChannel(new FragmentWriteHandler(), new NettyEncoder(CompressorTable.DEFAULT, (byte) 0, 0, NettyEncoder.MIN_FRAGMENT_SIZE));
+        ByteBuf body = Unpooled.buffer(NettyEncoder.MIN_FRAGMENT_SIZE * 3).writeZero(NettyEncoder.MIN_FRAGMENT_SIZE * 3);
+
+        // 只写不刷, 后续帧留在队列中
+        ChannelFuture future = sender.write(RemotingCommand.request(1, null).setBodyBuffer(body));
+        assertEquals(3, body.refCnt());
+
+        sender.close();
+        assertFalse(future.isSuccess());
+        // 第一帧与剩余 body 都已释放, 只剩指令自身的一份
+        assertEquals(1, body.refCnt());
+        body.release();
+    }
+
+    @Test
+    public void fragmentLimits() {
+        // 每个分片声明 3 帧的长度
+        int bodyLength = NettyEncoder.MIN_FRAGMENT_SIZE * 3;
+
+        // 分片数超出
+        EmbeddedChannel receiver = new EmbeddedChannel(new NettyDecoder(SerializerTable.DEFAULT, CompressorTable.DEFAULT, 0, 2, Long.MAX_VALUE));
+        List<ByteBuf> frames = firstFragmentFrames(3, bodyLength);
+        assertFalse(receiver.writeInbound(frames.get(0)));
+        assertFalse(receiver.writeInbound(frames.get(1)));
+        assertThrows(TooLongFrameException.class, () -> receiver.writeInbound(frames.get(2)));
+        assertFalse(receiver.finishAndReleaseAll());
+
+        // 声明的总长超出
+        EmbeddedChannel bytesReceiver = new EmbeddedChannel(new NettyDecoder(SerializerTable.DEFAULT, CompressorTable.DEFAULT, 0, 16, bodyLength * 2L - 1));
+        List<ByteBuf> bytesFrames = firstFragmentFrames(2, bodyLength);
+        assertFalse(bytesReceiver.writeInbound(bytesFrames.get(0)));
+        assertThrows(TooLongFrameException.class, () -> bytesReceiver.writeInbound(bytesFrames.get(1)));
+        assertFalse(bytesReceiver.finishAndReleaseAll());
+    }
+
+    @Test
+    public void fragmentDuplicateId() {
+        EmbeddedChannel receiver = new EmbeddedChannel(new NettyDecoder());
+        ByteBuf frame = firstFragmentFrames(1, NettyEncoder.MIN_FRAGMENT_SIZE * 3).get(0);
+        ByteBuf duplicate = frame.copy();
+
+        assertFalse(receiver.writeInbound(frame));
+        assertThrows(CorruptedFrameException.class, () -> receiver.writeInbound(duplicate));
+        assertFalse(receiver.finishAndReleaseAll());
+    }
+
+    /**
+     * 编码 count 个需要分片的指令, 只保留各自的第一帧
+     */
+    private static List<ByteBuf> firstFragmentFrames(int count, int bodyLength) {
+        EmbeddedChannel sender = new EmbeddedChannel(new FragmentWriteHandler(), new NettyEncoder(CompressorTable.DEFAULT, (byte) 0, 0, NettyEncoder.MIN_FRAGMENT_SIZE));
+        for (int i = 0; i < count; i++) {
+            sender.write(RemotingCommand.request(i, new byte[bodyLength]));
+        }
+        sender.flush();
+
+        List<ByteBuf> frames = new ArrayList<>();
+        ByteBuf frame;
+        while ((frame = sender.readOutbound()) != null) {
+            // MagicNumber + Length + Version + ReqId 之后是 Type
+            if (frame.getByte(13) == RemotingCommandCodec.TYPE_FRAGMENT) {
+                frame.release();
+            } else {
+                frames.add(frame);
+            }
+        }
+        assertEquals(count, frames.size());
+        assertFalse(sender.finish());
+        return frames;
+    }
+
+    @Test
+    public void unpackIsMemoized() {
+        AuthenticationToken token = new AuthenticationToken().setLogin("no-today");
+        RemotingCommand decoded = roundTrip(RemotingCommand.request(1024, null).pack(token));
+
+        AuthenticationToken unpacked = decoded.unpack(AuthenticationToken.class);
+        assertEquals(token, unpacked);
+        assertSame(unpacked, decoded.unpack(AuthenticationToken.class));
+
+        // body 变化后重新解析
+        decoded.pack(new AuthenticationToken().setLogin("other"));
+        assertEquals("other", decoded.unpack(AuthenticationToken.class).getLogin());
+
+        // 换用其他序列化器后重新解析, 不再返回缓存的结果
+        decoded.setSerializerId(RawSerializer.ID);
+        assertThrows(IllegalArgumentException.class, () -> decoded.unpack(AuthenticationToken.class));
+        decoded.release();
+    }
+
+    @Test
+    public void summary() {
+        RemotingCommand command = RemotingCommand.request(1024, new byte[1024], Map.of("traceId", "abc"));
+        String summary = command.summary();
+        assertTrue(summary.contains("code=1024"));
+        assertTrue(summary.contains("traceId=abc"));
+        assertTrue(summary.contains("bodyLength=1024"));
+        assertTrue(summary.length() < 256);
+    }
+}
@@ -32,6 +32,7 @@ public class NettyRemotingClientInstrumentation extends ClassInstanceMethodsEnha
             public ElementMatcher<MethodDescription> getMethodsMatcher() {
                 return ElementMatchers.named("invokeSyncImpl")
                         .or(ElementMatchers.named("invokeAsyncImpl"))
+                        .or(ElementMatchers.named("invokeFutureImpl"))
                         .or(ElementMatchers.named("invokeOnewayImpl"));
             }
 
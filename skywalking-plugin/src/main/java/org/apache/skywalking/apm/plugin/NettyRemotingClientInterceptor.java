@@ -39,7 +39,7 @@ public class NettyRemotingClientInterceptor implements InstanceMethodsAroundInte
             command.putExtFields(next.getHeadKey(), next.getHeadValue());
         }
 
-        span.tag(TAG_REQUEST, command.toString());
+        span.tag(TAG_REQUEST, command.summary());
 
         span.setComponent(ComponentsDefine.TRANSPORT_CLIENT);
         SpanLayer.asRPCFramework(span);
@@ -16,7 +16,6 @@ import org.apache.skywalking.apm.network.trace.component.ComponentsDefine;
 
 import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
-import java.util.Objects;
 import java.util.Optional;
 
 import static org.apache.skywalking.apm.plugin.NettyRemotingHelper.*;
@@ -58,7 +57,7 @@ public class NettyRemotingServerInterceptor implements InstanceMethodsAroundInte
     @Override
     public Object afterMethod(EnhancedInstance enhancedInstance, Method method, Object[] args, Class<?>[] classes, Object result) throws Throwable {
         AbstractSpan span = ContextManager.activeSpan();
-        span.tag(TAG_RESPONSE, Objects.toString(result));
+        span.tag(TAG_RESPONSE, result == null ? "null" : ((RemotingCommand) result).summary());
         span.tag(TAG_RESPONSE_CODE, String.valueOf(Optional.ofNullable(result).map(e -> ((RemotingCommand) e).getCode()).orElse(null)));
         ContextManager.stopSpan();
         return result;